@@ -1,6 +1,11 @@
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * ACOMazeSolver is a class that solves a maze using Ant Colony Optimization (ACO) algorithm.
@@ -8,21 +13,40 @@ import java.util.Random;
  */
 
 public class ACOMazeSolver {
-    // Constants to represent different types of cells in the maze
-    private static final int WALL = 0;
-    private static final int OPEN = 1;
-    private static final int START = 2;
-    private static final int GOAL = 3;
     private int rows;                   // Number of rows in the maze
     private int columns;                // Number of columns in the maze
-    private int[][] maze;               // Representation of the maze
-    private double[][] pheromoneLevels; // Pheromone levels between cells
-    private int startCell;              // Cell index of the start position
-    private int goalCell;               // Cell index of the goal position
-    private Random random;              // Random number generator
-
-    private static final double ALPHA = 0.1; // Importance of pheromone levels in probability calculation
-    private static final double BETA = 0.1;  // Importance of heuristic information in probability calculation
+    private MazeGrid grid;              // Representation of the maze
+    private PheromoneStore pheromoneLevels; // Pheromone levels between adjacent cells
+    private int startCell;              // Cell index of the start position of the current query
+    private int goalCell;               // Cell index of the goal position of the current query
+    private int goalRow;                // Row of the goal position
+    private int goalCol;                // Column of the goal position
+    private Ant[] ants;                 // Ants, kept between queries
+    private double[][] deposits;        // One pheromone deposit buffer per worker, kept between queries
+    private ForkJoinPool pool;          // Workers for the ants, or null when running on the calling thread
+    private int numAnts = 20;           // Number of ants per iteration
+    private int maxIterations = 10;     // Number of iterations
+    private int parallelism = 1;        // Number of worker threads the ants of an iteration are spread over
+    private long seed = System.nanoTime(); // Seed of the random number generators
+    private double alpha = 0.1;         // Importance of pheromone levels in probability calculation
+    private double beta = 0.1;          // Importance of heuristic information in probability calculation
+    private double evaporationRate = 0.5; // Fraction of pheromone that evaporates every iteration
+    private int stagnationLimit = 0;    // Iterations without a shorter path before stopping, or 0 to run them all
+    private long timeBudgetNanos = 0;   // Wall-clock time a query may take, or 0 for no limit
+    private long deadline;              // System.nanoTime() at which the current query's time budget runs out
+    private PathCache pathCache;        // Consulted by runACO(), or null
+    private ConnectivityIndex connectivity; // Rejects unreachable queries before any ant runs, or null
+    private DistanceFieldCache distanceFields; // Source of exact heuristics, or null for Manhattan distance
+    private DistanceField field;        // Exact distances to the current goal, or null
+    private final ColonyMetrics metrics = new ColonyMetrics(); // Counters and timings of the last run
+    private boolean trackEntropy = false; // Whether to compute the pheromone entropy after every iteration
+    // State of the query being run, kept between calls to runIterations
+    private int[] bestPath;             // Shortest path to the goal found so far, or null
+    private int bestPathLength;         // Cells in bestPath, or Integer.MAX_VALUE
+    private int iteration;              // Iterations run so far
+    private int sinceImprovement;       // Iterations in a row without a shorter path
+    private boolean stopped;            // Whether the query has run out of iterations, time or improvement
+    private long searchStart;           // System.nanoTime() when the first iteration started
 
     /**
      * Constructor for ACOMazeSolver class.
@@ -32,93 +56,185 @@ public class ACOMazeSolver {
      * @param maze    Representation of the maze.
      */
     public ACOMazeSolver(int rows, int columns, int[][] maze) {
-        this.rows = rows;
-        this.columns = columns;
-        this.maze = maze;
-        pheromoneLevels = new double[rows * columns][rows * columns];
+        this(MazeGrid.fromArray(rows, columns, maze));
+    }
+
+    /**
+     * Constructor for ACOMazeSolver class.
+     *
+     * @param grid Representation of the maze.
+     */
+    public ACOMazeSolver(MazeGrid grid) {
+        this.grid = grid;
+        this.rows = grid.getRows();
+        this.columns = grid.getColumns();
         initializePheromoneLevels();
-        random = new Random();
-
-        // Find the start cell and goal cell in the maze
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                if (maze[i][j] == START) {
-                    startCell = i * columns + j;
-                } else if (maze[i][j] == GOAL) {
-                    goalCell = i * columns + j;
-                }
-            }
-        }
     }
 
     /**
-     * Initializes the pheromone levels between cells in the maze.
-     * Sets pheromone levels to a small positive value for open cells, and 0 for wall cells.
+     * Returns the counters and timings of the last run. The same object is refilled by every run.
      */
-    private void initializePheromoneLevels() {
-        for (int i = 0; i < rows * columns; i++) {
-            for (int j = 0; j < rows * columns; j++) {
-                if (maze[i / columns][i % columns] != WALL && maze[j / columns][j % columns] != WALL) {
-                    pheromoneLevels[i][j] = 0.01;
-                }
-            }
+    public ColonyMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Chooses whether the pheromone entropy is computed after every iteration and reported in the metrics.
+     * It takes one pass with a logarithm per open edge, so it is off by default; the maze.ColonyIteration
+     * JFR event computes it whenever the event is recorded.
+     */
+    public void setTrackEntropy(boolean trackEntropy) {
+        this.trackEntropy = trackEntropy;
+    }
+
+    /**
+     * Makes the ants use exact distances to the goal, taken from the cache, as their heuristic instead of
+     * Manhattan distance. The cache is ignored if it belongs to a different grid. Pass null to go back.
+     */
+    public void setDistanceFields(DistanceFieldCache distanceFields) {
+        this.distanceFields = distanceFields;
+    }
+
+    /**
+     * Sets a connectivity index of the maze, so that queries between cells with no path between them return
+     * at once instead of running every iteration of ants. It is ignored once edits to the index make it
+     * describe a different grid than this solver's.
+     */
+    public void setConnectivityIndex(ConnectivityIndex connectivity) {
+        this.connectivity = connectivity;
+    }
+
+    /**
+     * Sets a cache that runACO() looks the path up in before running the colony, or null for none.
+     */
+    public void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    public void setNumAnts(int numAnts) {
+        this.numAnts = numAnts;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the number of worker threads used to run the ants of an iteration. 1 runs them on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the exponents that weigh pheromone (alpha) and closeness to the goal (beta) when an ant picks its next cell.
+     */
+    public void setWeights(double alpha, double beta) {
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Sets the fraction of pheromone that evaporates every iteration, between 0 and 1.
+     */
+    public void setEvaporationRate(double evaporationRate) {
+        if (evaporationRate < 0 || evaporationRate > 1) {
+            throw new IllegalArgumentException("evaporation rate must be between 0 and 1: " + evaporationRate);
         }
+        this.evaporationRate = evaporationRate;
+    }
+
+    /**
+     * Sets MAX-MIN bounds on the pheromone level of every edge, see {@link PheromoneStore#setBounds}.
+     */
+    public void setPheromoneBounds(double minLevel, double maxLevel) {
+        pheromoneLevels.setBounds(minLevel, maxLevel);
     }
 
     /**
-     * Formats the path found by an ant into a readable string representation.
+     * Stops a query once the best path has not become shorter for this many iterations in a row.
      *
-     * @param path       The path found by the ant.
-     * @param pathLength The length of the path.
-     * @return A formatted string representation of the path.
+     * @param stagnationLimit Number of iterations, or 0 to always run maxIterations.
      */
-    private String formatPath(int[] path, int pathLength) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < pathLength; i++) {
-            int cell = path[i];
-            int row = cell / columns;
-            int col = cell % columns;
-            builder.append("(").append(row).append(",").append(col).append(")");
-            if (i != pathLength - 1) {
-                builder.append(" -> ");
-            }
-        }
-        return builder.toString();
+    public void setStagnationLimit(int stagnationLimit) {
+        this.stagnationLimit = stagnationLimit;
+    }
+
+    /**
+     * Limits the wall-clock time of a query. When it runs out, the ants still walking give up and the best path
+     * found so far is returned.
+     *
+     * @param millis Time budget in milliseconds, or 0 for no limit.
+     */
+    public void setTimeBudget(long millis) {
+        this.timeBudgetNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Sets the seed of the random number generators. Runs with the same seed and parallelism give the same result.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the pheromone levels, so that they can be exchanged with other colonies between iterations.
+     */
+    public PheromoneStore getPheromoneStore() {
+        return pheromoneLevels;
+    }
+
+    /**
+     * Initializes the pheromone levels between adjacent cells in the maze.
+     * Sets pheromone levels to a small positive value for edges between open cells, and 0 for edges touching a wall.
+     */
+    private void initializePheromoneLevels() {
+        pheromoneLevels = new PheromoneStore(grid, 0.01);
     }
 
     /**
      * Represents an ant that traverses the maze to find a path.
+     * The candidate moves and their weights live in small per-ant buffers, so a step allocates nothing.
      */
     private class Ant {
         private int id;                 // Unique identifier for the ant
         private int currentCell;        // Current cell index
         private int[] path;             // Path taken by the ant
         private int pathLength;         // Length of the path
-        private boolean[] visited;      // Array to track visited cells
-        private Random random;
+        private int[] visited;          // Cells visited in the current run are marked with visitStamp
+        private int visitStamp;         // Stamp of the current run
+        private SplittableRandom random; // Random number generator owned by this ant
+        private final int[] candidates = new int[MazeGrid.DIRECTIONS];       // Unvisited open neighbours
+        private final int[] directions = new int[MazeGrid.DIRECTIONS];       // Direction to each candidate
+        private final double[] weights = new double[MazeGrid.DIRECTIONS];    // Selection weight of each candidate
 
         /**
          * Constructor for Ant class.
          *
-         * @param id Unique identifier for the ant.
+         * @param id     Unique identifier for the ant.
+         * @param random Random number generator owned by this ant.
          */
-        public Ant(int id) {
+        public Ant(int id, SplittableRandom random) {
             this.id = id;
             path = new int[(rows * columns)];
             pathLength = 0;
-            visited = new boolean[rows * columns];
-            currentCell = startCell;
-            path[pathLength++] = currentCell;
-            visited[currentCell] = true;
-            random = new Random();
+            visited = new int[rows * columns];
+            this.random = random;
         }
 
+        /**
+         * Puts the ant back on the start cell. Earlier runs are forgotten by moving to a new stamp
+         * instead of clearing the visited array.
+         */
         public void reset() {
+            if (++visitStamp == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                visitStamp = 1;
+            }
             pathLength = 0;
             currentCell = startCell;
             path[pathLength++] = currentCell;
-            Arrays.fill(visited, false);
-            visited[currentCell] = true;
+            visited[currentCell] = visitStamp;
         }
 
         /**
@@ -142,104 +258,94 @@ public class ACOMazeSolver {
         }
 
         /**
-         * Runs the ant through the maze until it reaches the goal or the path length limit.
+         * Returns whether the ant's path ends at the goal cell.
+         */
+        public boolean reachedGoal() {
+            return path[pathLength - 1] == goalCell;
+        }
+
+        /**
+         * Runs the ant through the maze until it reaches the goal, gets stuck, hits the path length limit
+         * or the query runs out of time.
          */
         public void run() {
             while (currentCell != goalCell && path.length > pathLength) {
+                if (timeBudgetNanos > 0 && (pathLength & 1023) == 0 && System.nanoTime() - deadline >= 0) {
+                    break;
+                }
                 int nextCell = selectNextCell();
+                if (nextCell < 0) {
+                    break;
+                }
                 path[pathLength] = nextCell;
-                visited[nextCell] = true;
+                visited[nextCell] = visitStamp;
                 currentCell = nextCell;
                 pathLength++;
             }
         }
 
         /**
-         * Selects the next cell for the ant to move to, based on the probability values calculated.
+         * Adds the pheromone this ant lays on its path to a deposit buffer.
          *
-         * @return The index of the next cell to move to.
+         * @param buffer A buffer returned by {@link PheromoneStore#newDepositBuffer()}.
          */
-        private int selectNextCell() {
-            double[] probabilities = calculateProbabilities();
-            double randomValue = random.nextDouble();
-            int rand;
-
-            double sum = 0;
-
-            for (int i = 0; i < probabilities.length; i++) {
-                sum += probabilities[i];
-                if (randomValue < sum) {  // Use < instead of <=
-                    // Convert the index to cell coordinates
-                    int row = i / columns;
-                    int col = i % columns;
-                    return row * columns + col;
-                } else rand = (int) (Math.random() * getNeighbors(currentCell).length);
-                if (getNeighbors(currentCell).length != 0) {
-                    return getNeighbors(currentCell)[rand];
-                }
-
+        public void depositOn(double[] buffer) {
+            double pheromone = 1.0 / pathLength;
+            for (int i = 0; i < pathLength - 1; i++) {
+                pheromoneLevels.deposit(buffer, path[i], path[i + 1], pheromone);
             }
-
-
-            return path[pathLength - 2];
         }
 
         /**
-         * Calculates the probability values for the ant to select each neighboring cell.
+         * Selects the next cell for the ant to move to by roulette-wheel selection over the unvisited neighbours.
+         * In a dead end the ant steps back to the cell it came from.
          *
-         * @return An array of probabilities for each neighboring cell.
+         * @return The index of the next cell to move to, or -1 if the ant cannot move.
          */
-        private double[] calculateProbabilities() {
-            double[] probabilities = new double[rows * columns];
-            double total = 0;
-
-            for (int neighbor : getNeighbors(currentCell)) {
-                if (!visited[neighbor]) {
-                    double pheromoneLevel = pheromoneLevels[currentCell][neighbor];
-                    double heuristic = getHeuristic(neighbor);
-                    probabilities[neighbor] = Math.pow(pheromoneLevel, ALPHA) * Math.pow(heuristic, BETA);
-                    total += probabilities[neighbor];
-                }
+        private int selectNextCell() {
+            int count = collectCandidates();
+            if (count == 0) {
+                return pathLength > 1 ? path[pathLength - 2] : -1;
             }
 
-            // Normalize probabilities
-            for (int i = 0; i < probabilities.length; i++) {
-                probabilities[i] /= total;
+            double total = 0;
+            for (int i = 0; i < count; i++) {
+                double pheromoneLevel = pheromoneLevels.level(currentCell, directions[i]);
+                double heuristic = getHeuristic(candidates[i]);
+                weights[i] = Math.pow(pheromoneLevel, alpha) * Math.pow(heuristic, beta);
+                total += weights[i];
             }
 
-            return probabilities;
+            double randomValue = random.nextDouble() * total;
+            for (int i = 0; i < count - 1; i++) {
+                randomValue -= weights[i];
+                if (randomValue < 0) {
+                    return candidates[i];
+                }
+            }
+            return candidates[count - 1];
         }
 
         /**
-         * Retrieves the neighboring cells of a given cell.
+         * Fills the candidate buffers with the unvisited open neighbours of the current cell.
          *
-         * @param cell The index of the cell.
-         * @return An array of neighboring cells.
+         * @return The number of candidates found.
          */
-        private int[] getNeighbors(int cell) {
-            int row = cell / columns;
-            int col = cell % columns;
-            ArrayList<Integer> neighbors = new ArrayList<>();
-
-            if (row > 0 && !visited[cell - columns] && maze[row - 1][col] != WALL) {
-                neighbors.add(cell - columns); // Up
-            }
-            if (row < rows - 1 && !visited[cell + columns] && maze[row + 1][col] != WALL) {
-                neighbors.add(cell + columns); // Down
-            }
-            if (col > 0 && !visited[cell - 1] && maze[row][col - 1] != WALL) {
-                neighbors.add(cell - 1); // Left
-            }
-            if (col < columns - 1 && !visited[cell + 1] && maze[row][col + 1] != WALL) {
-                neighbors.add(cell + 1); // Right
-            }
-
-            int[] result = new int[neighbors.size()];
-            for (int i = 0; i < neighbors.size(); i++) {
-                result[i] = neighbors.get(i);
+        private int collectCandidates() {
+            int cell = currentCell;
+            int mask = grid.getNeighborMask(cell);
+            int count = 0;
+
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    int neighbor = grid.neighbor(cell, direction);
+                    if (visited[neighbor] != visitStamp) {
+                        candidates[count] = neighbor;
+                        directions[count++] = direction;
+                    }
+                }
             }
-
-            return result;
+            return count;
         }
 
         /**
@@ -249,10 +355,12 @@ public class ACOMazeSolver {
          * @return The heuristic value.
          */
         private double getHeuristic(int cell) {
-            int row = cell / columns;
-            int col = cell % columns;
-            int goalRow = goalCell / columns;
-            int goalCol = goalCell % columns;
+            if (field != null) {
+                int distance = field.distance(cell);
+                return distance == DistanceField.UNREACHABLE ? 0 : 1.0 / (distance + 1);
+            }
+            int row = grid.row(cell);
+            int col = grid.col(cell);
             int dx = Math.abs(col - goalCol);
             int dy = Math.abs(row - goalRow);
             return 1.0 / (dx + dy + 1);
@@ -260,75 +368,331 @@ public class ACOMazeSolver {
     }
 
     /**
-     * Runs the Ant Colony Optimization algorithm to find the path in the maze.
+     * Runs the Ant Colony Optimization algorithm to find the path between the start and goal cells of the maze.
      */
     public void runACO() {
-        int numAnts = 20;
-        int maxIterations = 10;
-        int[] bestPath = null;
-        int bestPathLength = Integer.MAX_VALUE;
+        int[] bestPath = pathCache == null
+                ? findPath(grid.getStartCell(), grid.getGoalCell())
+                : pathCache.solve(grid, grid.getStartCell(), grid.getGoalCell(), "aco", this::findPath);
+        PathWriter.print("Output using ACO: ", grid, bestPath, "No path exists.");
+    }
 
-        for (int iteration = 0; iteration < maxIterations; iteration++) {
-            Ant[] ants = new Ant[numAnts];
+    /**
+     * Runs the Ant Colony Optimization algorithm between two cells without printing anything.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The best path found, with the number of cells the ants walked and the time taken.
+     */
+    public PathResult solve(int startCell, int goalCell) {
+        int[] path = findPath(startCell, goalCell);
+        return new PathResult("aco", startCell, goalCell, path, metrics.getExpanded(), metrics.getTotalNanos());
+    }
 
-            for (int i = 0; i < numAnts; i++) {
-                ants[i] = new Ant(i);
-                ants[i].run();
-                int[] path = ants[i].getPath();
-                int pathLength = ants[i].getPathLength();
+    /**
+     * Runs the Ant Colony Optimization algorithm between two cells of the maze.
+     * The solver can answer any number of queries; the ants, their buffers and the worker pool are reused,
+     * and the pheromone levels start afresh for every query.
+     * The ants of an iteration only read the pheromone levels, so they are split into chunks that run on
+     * separate worker threads, each laying its pheromone into a private buffer.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The best path found, from start to goal, or null if no ant reached the goal.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        SearchEvent event = FlightRecording.isRunning() ? new SearchEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        metrics.reset();
+        int[] bestPath = runColony(startCell, goalCell);
+        if (event != null) {
+            event.finish("aco", metrics);
+        }
+        return bestPath;
+    }
 
-                if (path[pathLength - 1] == goalCell && pathLength < bestPathLength) {
-                    bestPath = path;
-                    bestPathLength = pathLength;
-                }
-            }
+    /**
+     * Starts a query that is then run a few iterations at a time with {@link #runIterations}, so that the caller can
+     * act on the colony in between, as IslandColonies does to exchange paths and pheromone between colonies.
+     * findPath runs a whole query at once.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return False if there is certainly no path, in which case no iterations run.
+     */
+    public boolean beginQuery(int startCell, int goalCell) {
+        metrics.reset();
+        return beginColony(startCell, goalCell);
+    }
 
-            updatePheromoneLevels(ants);
-//            System.out.println("Iteration: " + (iteration + 1));
-//            System.out.println("Best path: " + formatPath(bestPath, bestPathLength));
-//            System.out.println("Path length: " + bestPathLength);
-//            System.out.println();
+    /**
+     * Runs more iterations of the query started by {@link #beginQuery}. The query stops for good once it has run
+     * maxIterations, its time budget has run out or it has stagnated.
+     *
+     * @param count Largest number of iterations to run.
+     * @return The number of iterations run, less than count once the query has stopped.
+     */
+    public int runIterations(int count) {
+        int ran = 0;
+        while (ran < count && !stopped) {
+            runIteration();
+            ran++;
         }
+        metrics.searchNanos = System.nanoTime() - searchStart;
+        metrics.pathLength = bestPath != null ? bestPathLength - 1 : -1;
+        return ran;
+    }
 
-        if (bestPath != null) {
-            System.out.println("Output using ACO: " + formatPath(bestPath, bestPathLength));
-        } else {
-            System.out.println("No path exists.");
-        }
+    /**
+     * Returns the shortest path found so far by the current query, or null if no ant has reached the goal.
+     * The array must not be modified.
+     */
+    public int[] getBestPath() {
+        return bestPath;
     }
 
     /**
-     * Updates the pheromone levels based on the paths taken by the ants.
+     * Hands the colony a path found elsewhere, such as by another colony, between the current query's start and
+     * goal. It becomes the colony's best path if it is shorter, and its edges get the pheromone an ant that walked
+     * it would lay.
      *
-     * @param ants An array of ants.
+     * @param path Cells from start to goal, or null for none. The array is not kept.
      */
-    private void updatePheromoneLevels(Ant[] ants) {
-        double evaporationRate = 0.5;
+    public void acceptPath(int[] path) {
+        if (path == null || path.length < 2 || path[0] != startCell || path[path.length - 1] != goalCell) {
+            return;
+        }
+        if (path.length < bestPathLength) {
+            bestPath = path.clone();
+            bestPathLength = path.length;
+            sinceImprovement = 0;
+            metrics.pathLength = bestPathLength - 1;
+        }
+        double pheromone = 1.0 / path.length;
+        for (int i = 0; i < path.length - 1; i++) {
+            pheromoneLevels.deposit(path[i], path[i + 1], pheromone);
+        }
+    }
 
-        // Evaporate pheromone levels
-        for (int i = 0; i < rows * columns; i++) {
-            for (int j = 0; j < rows * columns; j++) {
-                if (maze[i / columns][i % columns] != WALL && maze[j / columns][j % columns] != WALL) {
-                    pheromoneLevels[i][j] *= (1 - evaporationRate);
+    private int[] runColony(int startCell, int goalCell) {
+        if (!beginColony(startCell, goalCell)) {
+            return null;
+        }
+        runIterations(maxIterations);
+        return bestPath;
+    }
+
+    private boolean beginColony(int startCell, int goalCell) {
+        bestPath = null;
+        bestPathLength = Integer.MAX_VALUE;
+        stopped = true;
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            return false;
+        }
+        if (connectivity != null && connectivity.getGrid() == grid && !connectivity.isReachable(startCell, goalCell)) {
+            return false;
+        }
+        long phaseStart = System.nanoTime();
+        field = distanceFields != null && distanceFields.getGrid() == grid ? distanceFields.get(goalCell) : null;
+        if (field != null && field.distance(startCell) == DistanceField.UNREACHABLE) {
+            return false;
+        }
+        deadline = phaseStart + timeBudgetNanos;
+        this.startCell = startCell;
+        this.goalCell = goalCell;
+        goalRow = grid.row(goalCell);
+        goalCol = grid.col(goalCell);
+        pheromoneLevels.reset();
+        prepareColony();
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (Ant ant : ants) {
+            ant.random = seeds.split();
+        }
+        metrics.prepare(maxIterations);
+        searchStart = System.nanoTime();
+        metrics.setupNanos = searchStart - phaseStart;
+
+        metrics.stopReason = ColonyMetrics.StopReason.ITERATIONS;
+        iteration = 0;
+        sinceImprovement = 0;
+        stopped = maxIterations <= 0;
+        return true;
+    }
+
+    private void runIteration() {
+        ColonyIterationEvent iterationEvent = FlightRecording.isRunning() ? new ColonyIterationEvent() : null;
+        if (iterationEvent != null) {
+            iterationEvent.begin();
+        }
+        runAnts(ants, deposits, pool);
+
+        int succeeded = 0;
+        int iterationBest = Integer.MAX_VALUE;
+        int previousBest = bestPathLength;
+        for (int i = 0; i < numAnts; i++) {
+            int pathLength = ants[i].getPathLength();
+            metrics.expanded += pathLength;
+            if (ants[i].reachedGoal()) {
+                succeeded++;
+                iterationBest = Math.min(iterationBest, pathLength);
+                if (pathLength < bestPathLength) {
+                    bestPath = ants[i].getPath();
+                    bestPathLength = pathLength;
                 }
             }
         }
 
-        // Deposit pheromone on the paths taken by the ants
-        for (Ant ant : ants) {
-            int[] path = ant.getPath();
-            int pathLength = ant.getPathLength();
-            double pheromone = 1.0 / pathLength;
+        updatePheromoneLevels(deposits, pool);
+        if (iterationEvent != null) {
+            iterationEvent.end();
+        }
+        recordIteration(iterationEvent, iteration, succeeded,
+                succeeded > 0 ? iterationBest - 1 : -1, bestPath != null ? bestPathLength - 1 : -1);
+
+        iteration++;
+        sinceImprovement = bestPathLength < previousBest ? 0 : sinceImprovement + 1;
+        if (timeBudgetNanos > 0 && System.nanoTime() - deadline >= 0) {
+            metrics.stopReason = ColonyMetrics.StopReason.TIME_BUDGET;
+            stopped = true;
+        } else if (stagnationLimit > 0 && sinceImprovement >= stagnationLimit) {
+            metrics.stopReason = ColonyMetrics.StopReason.STAGNATION;
+            stopped = true;
+        } else if (iteration >= maxIterations) {
+            stopped = true;
+        }
+    }
 
-            for (int i = 0; i < pathLength - 1; i++) {
-                int fromCell = path[i];
-                int toCell = path[i + 1];
-                pheromoneLevels[fromCell][toCell] += pheromone;
-                pheromoneLevels[toCell][fromCell] += pheromone;
+    /**
+     * Adds one iteration to the metrics and commits its JFR event if that is being recorded. The event is null when
+     * no flight recording is running.
+     */
+    private void recordIteration(ColonyIterationEvent event, int iteration, int succeeded, int iterationBest, int bestSoFar) {
+        metrics.iterations++;
+        metrics.antsRun += numAnts;
+        metrics.antsSucceeded += succeeded;
+        metrics.iterationBest[iteration] = iterationBest;
+        boolean record = event != null && event.shouldCommit();
+        if (trackEntropy || record) {
+            metrics.iterationEntropy[iteration] = pheromoneLevels.entropy();
+        }
+        if (record) {
+            event.iteration = iteration;
+            event.ants = numAnts;
+            event.antsSucceeded = succeeded;
+            event.iterationBest = iterationBest;
+            event.bestSoFar = bestSoFar;
+            event.entropy = metrics.iterationEntropy[iteration];
+            event.commit();
+        }
+    }
+
+    /**
+     * Creates the ants, deposit buffers and worker pool, or keeps the existing ones if the settings have not changed.
+     */
+    private void prepareColony() {
+        if (ants == null || ants.length != numAnts) {
+            ants = new Ant[numAnts];
+            for (int i = 0; i < numAnts; i++) {
+                ants[i] = new Ant(i, null);
+            }
+        }
+        int workers = Math.max(1, Math.min(parallelism, numAnts));
+        if (deposits == null || deposits.length != workers) {
+            deposits = new double[workers][];
+            for (int w = 0; w < workers; w++) {
+                deposits[w] = pheromoneLevels.newDepositBuffer();
             }
         }
+        if (pool != null && pool.getParallelism() != workers) {
+            shutdown();
+        }
+        if (pool == null && workers > 1) {
+            pool = new ForkJoinPool(workers);
+        }
     }
-}
 
+    /**
+     * Stops the worker threads, if any. The solver can still be used afterwards and starts new workers when needed.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
 
+    /**
+     * Runs every ant once. Worker w runs a contiguous chunk of the ants and deposits into deposits[w].
+     *
+     * @param ants     An array of ants.
+     * @param deposits One deposit buffer per worker.
+     * @param pool     The pool to run the workers on, or null to run them on the calling thread.
+     */
+    private void runAnts(Ant[] ants, double[][] deposits, ForkJoinPool pool) {
+        int workers = deposits.length;
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            int from = (int) ((long) w * ants.length / workers);
+            int to = (int) ((long) (w + 1) * ants.length / workers);
+            double[] buffer = deposits[w];
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    ants[i].reset();
+                    ants[i].run();
+                    ants[i].depositOn(buffer);
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks, pool);
+    }
 
+    /**
+     * Updates the pheromone levels: evaporates the old trails, then merges the pheromone laid by the ants.
+     *
+     * @param deposits One deposit buffer per worker.
+     * @param pool     The pool to merge on, or null to merge on the calling thread.
+     */
+    private void updatePheromoneLevels(double[][] deposits, ForkJoinPool pool) {
+        // Evaporate pheromone levels
+        pheromoneLevels.evaporate(evaporationRate);
+
+        // Deposit pheromone on the paths taken by the ants, one stripe of edges per worker
+        int edges = pheromoneLevels.openEdgeCount();
+        int stripes = pool == null ? 1 : pool.getParallelism();
+        List<Callable<Void>> tasks = new ArrayList<>(stripes);
+        for (int s = 0; s < stripes; s++) {
+            int from = (int) ((long) s * edges / stripes);
+            int to = (int) ((long) (s + 1) * edges / stripes);
+            tasks.add(() -> {
+                pheromoneLevels.mergeDeposits(deposits, from, to);
+                return null;
+            });
+        }
+        invokeAll(tasks, pool);
+    }
+
+    private static void invokeAll(List<Callable<Void>> tasks, ForkJoinPool pool) {
+        try {
+            if (pool == null) {
+                for (Callable<Void> task : tasks) {
+                    task.call();
+                }
+                return;
+            }
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,154 +1,346 @@
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 
+/**
+ * AstarAlgorithm finds shortest paths with A*. One instance can serve any number of threads at once: the maze and
+ * the settings are shared, and each thread searches with its own context (cost, parent and state arrays plus the
+ * open list), created on the thread's first query and reused after that. A context is reset for the next search
+ * by moving to a new generation, so the arrays are never cleared. Change the settings before sharing the solver.
+ */
 public class AstarAlgorithm {
-    private int grid_cols;
-    private int grid_rows;
-    private int[][] maze;
-    private Node startNode, goalNode, currentNode;
-    Node[][] nodes;
-    ArrayList<Node> openList = new ArrayList<>();
-    ArrayList<Node> checkedList = new ArrayList<>();
-    boolean goalReached = false;
-    private static int steps = 0;
+    // Search state of a cell
+    private static final byte UNSEEN = 0;
+    private static final byte OPEN = 1;
+    private static final byte CHECKED = 2;
+
+    private final MazeGrid grid;
+    private final long maxSteps;     // Safety bound on expansions per search, computed once
+    private volatile boolean linearScan = false;
+    private volatile PathCache pathCache;     // Consulted by search(), or null
+    private volatile ConnectivityIndex connectivity; // Rejects unreachable queries up front, or null
+    private volatile DistanceFieldCache distanceFields; // Source of exact heuristics, or null for Manhattan distance
+    // A context must not refer back to the solver: the thread's map holds it strongly, so it would keep the solver
+    // and this key alive for as long as the thread lives
+    private final ThreadLocal<SearchContext> contexts;
 
     public AstarAlgorithm(int rows, int cols, int[][] maze) {
-        grid_rows = rows;
-        grid_cols = cols;
-        nodes = new Node[rows][cols];
-        this.maze = maze;
-        for (int i = 0; i < grid_rows; i++) {
-            for (int j = 0; j < grid_cols; j++) {
-                nodes[i][j] = new Node(i, j, maze[i][j]);
-            }
-        }
-        setNodes();
-        setCosts();
+        this(MazeGrid.fromArray(rows, cols, maze));
+    }
 
+    public AstarAlgorithm(MazeGrid grid) {
+        this.grid = grid;
+        long side = Integer.max(grid.getColumns(), grid.getRows());
+        maxSteps = side * side * side;
+        contexts = ThreadLocal.withInitial(() -> new SearchContext(grid));
     }
 
-    private void setCosts() {
-        for (int i = 0; i < grid_rows; i++) {
-            for (int j = 0; j < grid_cols; j++) {
-                getCost(nodes[i][j]);
-            }
-        }
+    /**
+     * Makes the search use exact distances to the goal, taken from the cache, as its heuristic instead of
+     * Manhattan distance. The cache is ignored if it belongs to a different grid. Pass null to go back.
+     */
+    public void setDistanceFields(DistanceFieldCache distanceFields) {
+        this.distanceFields = distanceFields;
     }
 
-    private void getCost(Node node) {
-        //G
-        int x = Math.abs(node.col - startNode.col);
-        int y = Math.abs(node.row - startNode.row);
-        node.g = x + y;
-        //H
-        int x1 = Math.abs(node.col - goalNode.col);
-        int y1 = Math.abs(node.row - goalNode.row);
-        node.h = x1 + y1;
-        //f
-        node.f = node.g + node.h;
+    /**
+     * Chooses how the open list is kept: a linear-scan list (the original behaviour, kept for comparison)
+     * or the indexed binary heap.
+     */
+    public void setLinearScan(boolean linearScan) {
+        this.linearScan = linearScan;
     }
 
-    private void setNodes() {
-        for (int i = 0; i < grid_rows; i++) {
-            for (int j = 0; j < grid_cols; j++) {
-                if (nodes[i][j].isStart()) {
-                    startNode = nodes[i][j];
-                    currentNode = startNode;
-                } else if (nodes[i][j].isGoal()) {
-                    goalNode = nodes[i][j];
-                }
-            }
-        }
+    /**
+     * Sets a connectivity index of the maze, so that queries between cells with no path between them return
+     * at once instead of exploring the whole component of the start. It is ignored once edits to the index
+     * make it describe a different grid than this solver's.
+     */
+    public void setConnectivityIndex(ConnectivityIndex connectivity) {
+        this.connectivity = connectivity;
     }
 
+    /**
+     * Sets a cache that search() looks the path up in before searching, or null for none.
+     */
+    public void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
     public void search() {
-        while (goalReached == false && steps <= Math.pow(Integer.max(grid_cols, grid_rows), 3)) {
-            int row = currentNode.row;
-            int col = currentNode.col;
-            currentNode.setChecked();
-            checkedList.add(currentNode);
-            openList.remove(currentNode);
-            //open up node
-            if (row - 1 >= 0)
-                openNode(nodes[row - 1][col]);
-
-            //open left node
-            if (col - 1 >= 0)
-                openNode(nodes[row][col - 1]);
-            //open right node
-            if (col + 1 <= grid_cols - 1)
-                openNode(nodes[row][col + 1]);
-            //open down node
-            if (row + 1 <= grid_rows - 1)
-                openNode(nodes[row + 1][col]);
-            //find best node
-            int bestNodeIndex = 0;
-            int bestNodef = Integer.MAX_VALUE;
-            for (int i = 0; i < openList.size(); i++) {
-                if (openList.get(i).f < bestNodef) {
-                    bestNodeIndex = i;
-                    bestNodef = openList.get(i).f;
-                }//if f equal then check g
-                else if (openList.get(i).f == bestNodef) {
-                    if (openList.get(i).g < openList.get(bestNodeIndex).g) {
-                        bestNodeIndex = i;
-                    }
-                }
-            }
+        int[] path = pathCache == null
+                ? findPath(grid.getStartCell(), grid.getGoalCell())
+                : pathCache.solve(grid, grid.getStartCell(), grid.getGoalCell(), "astar", this::findPath);
+        PathWriter.print("output using A star: ", grid, path, "No path exists");
+    }
 
-            if (bestNodeIndex == 0 && openList.size() == 0) {
-                System.out.println("No path exists");
-                break;
-            }
-            //after loop set current node as best node
-            currentNode = openList.get(bestNodeIndex);
-            if (currentNode == goalNode) {
-                goalReached = true;
-                backtrack();
-            }
-            steps++;
-        }
-        if (goalReached == false && steps == Math.pow(Integer.max(grid_cols, grid_rows), 3)) {
-            System.out.println("No path exists");
-        }
+    /**
+     * Searches for a shortest path between two cells without printing anything.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path, with the number of cells expanded and the time taken.
+     */
+    public PathResult solve(int startCell, int goalCell) {
+        int[] path = findPath(startCell, goalCell);
+        SearchMetrics metrics = getMetrics();
+        return new PathResult("astar", startCell, goalCell, path, metrics.getExpanded(), metrics.getTotalNanos());
+    }
 
+    /**
+     * Returns the counters and phase timings of the calling thread's last search. The same object is refilled by
+     * every search on that thread.
+     */
+    public SearchMetrics getMetrics() {
+        return contexts.get().metrics;
     }
 
-    private void backtrack() {
-        LinkedList<Node> path = new LinkedList<>();
-        path.add(goalNode);
-        Node current = goalNode;
-        while (current != startNode) {
-            current = current.parent;
-            path.addFirst(current);
+    /**
+     * Searches for a shortest path between two cells. The solver can answer any number of queries, from any number
+     * of threads; each thread's buffers are allocated on its first query and reused. Each search fills in
+     * {@link #getMetrics()} and, when flight recording is on, records a maze.Search event.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, or null if there is none.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        SearchContext context = contexts.get();
+        SearchEvent event = FlightRecording.isRunning() ? new SearchEvent() : null;
+        if (event != null) {
+            event.begin();
         }
-        System.out.print("output using A star: ");
-        for (int i = 0; i < path.size() - 1; i++) {
-            System.out.print("(" + path.get(i).row + "," + path.get(i).col + ") -> ");
+        context.metrics.reset();
+        int[] path = context.search(this, startCell, goalCell);
+        if (event != null) {
+            event.finish("astar", context.metrics);
         }
-        System.out.println("(" + path.get(path.size() - 1).row + ", " + path.get(path.size() - 1).col + ")");
+        return path;
     }
 
-    private void openNode(Node node) {
-        if (node.isOpen() == false && node.isChecked() == false && node.isSolid() == false) {
-            node.setOpen();
-            node.parent = currentNode;
-            openList.add(node);
-
-        }
+    /**
+     * Returns the start cell of the calling thread's last search.
+     */
+    public int getStartCell() {
+        return contexts.get().startCell;
     }
 
-    public Node getStartNode() {
-        return startNode;
+    /**
+     * Returns the goal cell of the calling thread's last search.
+     */
+    public int getGoalCell() {
+        return contexts.get().goalCell;
     }
 
-    public Node getGoalNode() {
-        return goalNode;
+    /**
+     * Returns the cell the calling thread's last search expanded last.
+     */
+    public int getCurrentCell() {
+        return contexts.get().currentCell;
     }
 
-    public Node getCurrentNode() {
-        return currentNode;
-    }
+    /**
+     * The per-search state of one thread, indexed by cell. It is only valid where stamp equals the current
+     * generation, so a new search starts by moving to the next generation instead of clearing the arrays.
+     * It takes the solver's settings at the start of each search rather than keeping a reference to the solver.
+     */
+    private static final class SearchContext {
+        private final MazeGrid grid;
+        private final int[] g;       // Cost from start cell to the cell
+        private final int[] parent;  // Cell the search reached the cell from
+        private final byte[] state;  // UNSEEN, OPEN or CHECKED
+        private final int[] stamp;   // Generation in which the cell's state was last written
+        private int generation;
+        private int[] openList;      // Open list used in linear-scan mode
+        private int openListSize;
+        private final IndexedMinHeap openHeap; // Open list used in heap mode
+        private boolean linear;      // Whether the current search uses the linear-scan list
+        private DistanceField field; // Exact distances to the current goal, or null
+        private int startCell, goalCell, currentCell;
+        private boolean goalReached;
+        private long steps;          // Cells expanded by the current search
+        private long maxSteps;       // Safety bound on expansions, taken from the solver
+        private final SearchMetrics metrics = new SearchMetrics(); // Counters and timings of the last search
 
-}
+        SearchContext(MazeGrid grid) {
+            this.grid = grid;
+            int cells = grid.getCellCount();
+            g = new int[cells];
+            parent = new int[cells];
+            state = new byte[cells];
+            stamp = new int[cells];
+            openHeap = new IndexedMinHeap(cells);
+            startCell = grid.getStartCell();
+            goalCell = grid.getGoalCell();
+            currentCell = startCell;
+        }
 
+        private byte stateOf(int cell) {
+            return stamp[cell] == generation ? state[cell] : UNSEEN;
+        }
+
+        private void setState(int cell, byte newState) {
+            stamp[cell] = generation;
+            state[cell] = newState;
+        }
+
+        //H: exact distance to the goal when a distance field is in use, otherwise Manhattan distance
+        private int getCost(int cell) {
+            return field != null ? field.distance(cell) : grid.manhattan(cell, goalCell);
+        }
+
+        // Second heap key. With an exact heuristic every cell on a shortest path has the same f, so ties go to the
+        // deeper cell and the search walks straight down the path instead of widening across it.
+        private int tieKey(int g) {
+            return field != null ? -g : g;
+        }
+
+        int[] search(AstarAlgorithm solver, int startCell, int goalCell) {
+            if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+                return null;
+            }
+            ConnectivityIndex index = solver.connectivity;
+            if (index != null && index.getGrid() == grid && !index.isReachable(startCell, goalCell)) {
+                return null;
+            }
+            long phaseStart = System.nanoTime();
+            DistanceFieldCache fields = solver.distanceFields;
+            field = fields != null && fields.getGrid() == grid ? fields.get(goalCell) : null;
+            if (field != null && field.distance(startCell) == DistanceField.UNREACHABLE) {
+                return null;
+            }
+            this.startCell = startCell;
+            this.goalCell = goalCell;
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            linear = solver.linearScan;
+            maxSteps = solver.maxSteps;
+            goalReached = false;
+            steps = 0;
+            openHeap.clear();
+            openListSize = 0;
+
+            g[startCell] = 0;
+            parent[startCell] = -1;
+            setState(startCell, OPEN);
+            if (linear) {
+                if (openList == null) {
+                    openList = new int[16];
+                }
+                openList[openListSize++] = startCell;
+            } else {
+                openHeap.insert(startCell, getCost(startCell), 0);
+            }
+            metrics.peakOpenSize = 1;
+            long searchStart = System.nanoTime();
+            metrics.setupNanos = searchStart - phaseStart;
+            while (goalReached == false && steps <= maxSteps) {
+                //find best node
+                if (linear) {
+                    currentCell = pollLinear();
+                } else {
+                    currentCell = openHeap.isEmpty() ? -1 : openHeap.poll();
+                }
+                if (currentCell < 0) {
+                    break;
+                }
+                if (currentCell == goalCell) {
+                    goalReached = true;
+                    break;
+                }
+                setState(currentCell, CHECKED);
+                //open up, down, left and right nodes
+                int mask = grid.getNeighborMask(currentCell);
+                for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                    if ((mask & (1 << direction)) != 0) {
+                        openNode(grid.neighbor(currentCell, direction));
+                    }
+                }
+                steps++;
+            }
+            metrics.expanded = (int) steps;
+            long reconstructStart = System.nanoTime();
+            metrics.searchNanos = reconstructStart - searchStart;
+            if (!goalReached) {
+                return null;
+            }
+            int[] path = backtrack();
+            metrics.pathLength = path.length - 1;
+            metrics.reconstructNanos = System.nanoTime() - reconstructStart;
+            return path;
+        }
+
+        /**
+         * Removes and returns the open cell with the lowest f (lowest g on ties) by scanning the whole list.
+         */
+        private int pollLinear() {
+            if (openListSize == 0) {
+                return -1;
+            }
+            int bestIndex = 0;
+            int bestF = g[openList[0]] + getCost(openList[0]);
+            for (int i = 1; i < openListSize; i++) {
+                int cell = openList[i];
+                int f = g[cell] + getCost(cell);
+                if (f < bestF || (f == bestF && g[cell] < g[openList[bestIndex]])) {
+                    bestIndex = i;
+                    bestF = f;
+                }
+            }
+            int best = openList[bestIndex];
+            System.arraycopy(openList, bestIndex + 1, openList, bestIndex, openListSize - bestIndex - 1);
+            openListSize--;
+            return best;
+        }
+
+        private int[] backtrack() {
+            int length = 1;
+            for (int cell = goalCell; cell != startCell; cell = parent[cell]) {
+                length++;
+            }
+            int[] path = new int[length];
+            int cell = goalCell;
+            for (int i = length - 1; i >= 0; i--) {
+                path[i] = cell;
+                cell = parent[cell];
+            }
+            return path;
+        }
+
+        private void openNode(int cell) {
+            byte cellState = stateOf(cell);
+            if (cellState == CHECKED || (field != null && field.distance(cell) == DistanceField.UNREACHABLE)) {
+                return;
+            }
+            int newG = g[currentCell] + 1;
+            if (cellState == UNSEEN) {
+                setState(cell, OPEN);
+                parent[cell] = currentCell;
+                g[cell] = newG;
+                if (linear) {
+                    if (openListSize == openList.length) {
+                        openList = Arrays.copyOf(openList, openListSize * 2);
+                    }
+                    openList[openListSize++] = cell;
+                } else {
+                    openHeap.insert(cell, newG + getCost(cell), tieKey(newG));
+                }
+                int openSize = linear ? openListSize : openHeap.size();
+                if (openSize > metrics.peakOpenSize) {
+                    metrics.peakOpenSize = openSize;
+                }
+            } else if (newG < g[cell]) {
+                //shorter route to a cell already in the open list
+                parent[cell] = currentCell;
+                g[cell] = newG;
+                metrics.reopened++;
+                if (!linear) {
+                    openHeap.decreaseKey(cell, newG + getCost(cell), tieKey(newG));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchSolver answers many (start, goal) queries against one maze.
+ * The maze is loaded once and each solver is built once, so every query reuses the solver's buffers
+ * instead of paying the setup cost again.
+ */
+public class BatchSolver {
+    private final MazeGrid grid;    // The maze all queries run against
+    private AstarAlgorithm astar;   // Built on the first A* query
+    private ACOMazeSolver aco;      // Built on the first ACO query
+    private JumpPointSearch jps;    // Built on the first JPS query
+    private HierarchicalPathfinder hpa; // Built on the first HPA* query
+    private BidirectionalAstar bidirectional; // Built on the first bidirectional A* query
+    private BitParallelBfs bfs;     // Built on the first bit-parallel BFS query
+    private PathCache pathCache;    // Answers repeated queries, or null
+    private ConnectivityIndex connectivity; // Built on the first query, rejects unreachable ones
+    private ExecutorService pool;   // Threads of solveAllParallel, kept so their A* search buffers are reused
+    private int poolSize;           // Number of threads in pool
+
+    public BatchSolver(MazeGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Loads a maze file for batch queries.
+     *
+     * @param file A maze file in any format MazeLoader reads.
+     */
+    public static BatchSolver load(Path file) throws IOException {
+        return new BatchSolver(MazeLoader.load(file));
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the A* solver used for queries.
+     */
+    public AstarAlgorithm getAstarSolver() {
+        if (astar == null) {
+            astar = new AstarAlgorithm(grid);
+        }
+        return astar;
+    }
+
+    /**
+     * Returns the ACO solver used for queries, so its colony settings can be changed.
+     */
+    public ACOMazeSolver getACOSolver() {
+        if (aco == null) {
+            aco = new ACOMazeSolver(grid);
+        }
+        return aco;
+    }
+
+    /**
+     * Returns the connectivity index queries are checked against, building it if needed.
+     */
+    public ConnectivityIndex getConnectivityIndex() {
+        if (connectivity == null) {
+            connectivity = new ConnectivityIndex(grid);
+        }
+        return connectivity;
+    }
+
+    /**
+     * Sets a cache that queries are looked up in before any solver runs, or null for none.
+     * The cache may be shared with other solvers and other mazes.
+     */
+    public void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    /**
+     * Answers one query. Queries between cells with no path between them are answered from the
+     * connectivity index without running a solver.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @param algorithm "astar", "aco", "jps", "hpa", "bidir", "bidir-threads" or "bfs".
+     * @return The path from start to goal, or null if none was found.
+     */
+    public int[] solve(int startCell, int goalCell, String algorithm) {
+        if (!getConnectivityIndex().isReachable(startCell, goalCell)) {
+            return null;
+        }
+        if (pathCache != null) {
+            return pathCache.solve(grid, startCell, goalCell, algorithm, (start, goal) -> compute(start, goal, algorithm));
+        }
+        return compute(startCell, goalCell, algorithm);
+    }
+
+    private int[] compute(int startCell, int goalCell, String algorithm) {
+        switch (algorithm) {
+            case "astar":
+                return getAstarSolver().findPath(startCell, goalCell);
+            case "aco":
+                return getACOSolver().findPath(startCell, goalCell);
+            case "jps":
+                if (jps == null) {
+                    jps = new JumpPointSearch(grid);
+                }
+                return jps.findPath(startCell, goalCell);
+            case "hpa":
+                if (hpa == null) {
+                    hpa = new HierarchicalPathfinder(grid);
+                }
+                return hpa.findPath(startCell, goalCell);
+            case "bidir":
+            case "bidir-threads":
+                if (bidirectional == null) {
+                    bidirectional = new BidirectionalAstar(grid);
+                }
+                bidirectional.setConcurrent(algorithm.equals("bidir-threads"));
+                return bidirectional.findPath(startCell, goalCell);
+            case "bfs":
+                if (bfs == null) {
+                    bfs = new BitParallelBfs(grid);
+                }
+                return bfs.findPath(startCell, goalCell);
+            default:
+                throw new IllegalArgumentException("unknown algorithm " + algorithm);
+        }
+    }
+
+    /**
+     * Answers a batch of queries in order.
+     *
+     * @param startCells Cell index of the start position of each query.
+     * @param goalCells  Cell index of the goal position of each query.
+     * @param algorithm  "astar", "aco", "jps", "hpa", "bidir", "bidir-threads" or "bfs".
+     * @return The path of each query, null where none was found.
+     */
+    public int[][] solveAll(int[] startCells, int[] goalCells, String algorithm) {
+        int[][] paths = new int[startCells.length][];
+        for (int i = 0; i < startCells.length; i++) {
+            paths[i] = solve(startCells[i], goalCells[i], algorithm);
+        }
+        return paths;
+    }
+
+    /**
+     * Answers a batch of A* queries on several threads. The threads share one A* solver, which gives each
+     * thread its own search buffers, and the connectivity index and path cache, which they only read or which
+     * are synchronized. The threads are kept for the next batch, so the buffers are allocated once per thread
+     * rather than once per batch; {@link #shutdown()} stops them.
+     *
+     * @param startCells  Cell index of the start position of each query.
+     * @param goalCells   Cell index of the goal position of each query.
+     * @param parallelism Number of threads to use.
+     * @return The path of each query, null where none was found.
+     */
+    public synchronized int[][] solveAllParallel(int[] startCells, int[] goalCells, int parallelism) {
+        // Built here, before the threads start, because they are built lazily without locking
+        getConnectivityIndex();
+        getAstarSolver();
+        if (pool != null && poolSize != parallelism) {
+            shutdown();
+        }
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(parallelism, task -> {
+                Thread thread = new Thread(task, "batch-solver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            poolSize = parallelism;
+        }
+        int[][] paths = new int[startCells.length][];
+        // Every thread takes the next unanswered query until none is left, so long queries do not hold up the rest
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int t = 0; t < parallelism; t++) {
+            tasks.add(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < startCells.length) {
+                    paths[i] = solve(startCells[i], goalCells[i], "astar");
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return paths;
+    }
+
+    /**
+     * Stops the threads of solveAllParallel and of the solvers that have any. The solver can still be used
+     * afterwards and starts new threads when needed.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (aco != null) {
+            aco.shutdown();
+        }
+        if (bidirectional != null) {
+            bidirectional.shutdown();
+        }
+    }
+
+    /**
+     * Reads queries from a file with one query per line: start row, start column, goal row, goal column.
+     * Blank lines and lines starting with # are skipped.
+     *
+     * @return Two arrays: the start cells and the goal cells.
+     */
+    public int[][] readQueries(Path file) throws IOException {
+        int[] starts = new int[16];
+        int[] goals = new int[16];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("[\\s,]+");
+                if (parts.length != 4) {
+                    throw new IOException("expected 'startRow startCol goalRow goalCol' but got: " + line);
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    goals = Arrays.copyOf(goals, count * 2);
+                }
+                starts[count] = cellAt(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+                goals[count] = cellAt(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                count++;
+            }
+        }
+        return new int[][]{Arrays.copyOf(starts, count), Arrays.copyOf(goals, count)};
+    }
+
+    private int cellAt(int row, int col) throws IOException {
+        if (row < 0 || row >= grid.getRows() || col < 0 || col >= grid.getColumns()) {
+            throw new IOException("cell (" + row + "," + col + ") is outside the maze");
+        }
+        return grid.index(row, col);
+    }
+}
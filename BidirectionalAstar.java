@@ -0,0 +1,295 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BidirectionalAstar finds shortest paths like AstarAlgorithm, but runs one A* forward from the start cell and
+ * one backward from the goal cell at the same time. In long corridors the two frontiers meet in the middle, so
+ * together they explore roughly half the cells a single search would.
+ *
+ * Whenever a frontier reaches a cell the other frontier has already reached, the two halves form a path, and
+ * the shortest such path is kept. The search stops as soon as either frontier's lowest f is no smaller than
+ * that path: the Manhattan heuristic never overestimates, so no cheaper path can still be found.
+ *
+ * By default both frontiers take turns on the calling thread. With {@link #setConcurrent(boolean)} the backward
+ * frontier runs on a worker thread of its own, and the frontiers share their g values through volatile reads
+ * and writes so that no meeting cell is missed.
+ */
+public class BidirectionalAstar {
+    // Search state of a cell
+    private static final byte OPEN = 1;
+    private static final byte CHECKED = 2;
+    private static final long NO_PATH = Long.MAX_VALUE;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final MazeGrid grid;
+    private final Frontier forward;
+    private final Frontier backward;
+    private int generation;
+    // Length of the shortest path found so far in the high 32 bits, and the cell the frontiers met at in the low 32
+    private final AtomicLong best = new AtomicLong(NO_PATH);
+    private volatile boolean stopped;   // Set once either frontier has proved the best path is shortest
+    private boolean concurrent = false;
+    private ForkJoinPool pool;          // Runs the backward frontier in concurrent mode
+
+    /**
+     * One direction of the search: an A* towards a target cell, with its own per-cell state.
+     */
+    private final class Frontier {
+        private int target;
+        private final int[] g;       // Cost from the source cell to the cell
+        private final int[] parent;  // Cell the frontier reached the cell from
+        private final byte[] state;  // OPEN or CHECKED, where stamp is current
+        private final int[] stamp;   // Generation in which the cell's state was last written
+        private final IndexedMinHeap openHeap;
+        private Frontier other;
+        private int expanded;        // Cells expanded by the last search
+
+        Frontier(int cells) {
+            g = new int[cells];
+            parent = new int[cells];
+            state = new byte[cells];
+            stamp = new int[cells];
+            openHeap = new IndexedMinHeap(cells);
+        }
+
+        void start(int source, int target) {
+            this.target = target;
+            openHeap.clear();
+            expanded = 0;
+            parent[source] = -1;
+            state[source] = OPEN;
+            writeG(source, 0);
+            writeStamp(source);
+            openHeap.insert(source, grid.manhattan(source, target), 0);
+        }
+
+        /**
+         * Returns true if this frontier can stop: it has run out of cells, or none of its open cells
+         * can lie on a path shorter than the best one found.
+         */
+        boolean isDone() {
+            return openHeap.isEmpty() || openHeap.peekF() >= (best.get() >>> 32);
+        }
+
+        void expandNext() {
+            int cell = openHeap.poll();
+            state[cell] = CHECKED;
+            expanded++;
+            int newG = g[cell] + 1;
+            int mask = grid.getNeighborMask(cell);
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    relax(cell, grid.neighbor(cell, direction), newG);
+                }
+            }
+        }
+
+        /**
+         * Runs this frontier alone until it or the other frontier stops the search.
+         */
+        void run() {
+            while (!stopped) {
+                if (isDone()) {
+                    stopped = true;
+                    return;
+                }
+                expandNext();
+            }
+        }
+
+        private void relax(int from, int cell, int newG) {
+            if (stamp[cell] != generation) {
+                state[cell] = OPEN;
+                parent[cell] = from;
+                writeG(cell, newG);
+                writeStamp(cell);
+                openHeap.insert(cell, newG + grid.manhattan(cell, target), newG);
+            } else if (state[cell] == OPEN && newG < g[cell]) {
+                parent[cell] = from;
+                writeG(cell, newG);
+                openHeap.decreaseKey(cell, newG + grid.manhattan(cell, target), newG);
+            } else {
+                return;
+            }
+            // Written before reading, so of two frontiers reaching a cell at once at least one sees the other
+            if (other.readStamp(cell) == generation) {
+                offer(newG + other.readG(cell), cell);
+            }
+        }
+
+        private void writeG(int cell, int value) {
+            if (concurrent) {
+                INTS.setVolatile(g, cell, value);
+            } else {
+                g[cell] = value;
+            }
+        }
+
+        private void writeStamp(int cell) {
+            if (concurrent) {
+                INTS.setVolatile(stamp, cell, generation);
+            } else {
+                stamp[cell] = generation;
+            }
+        }
+
+        private int readG(int cell) {
+            return concurrent ? (int) INTS.getVolatile(g, cell) : g[cell];
+        }
+
+        private int readStamp(int cell) {
+            return concurrent ? (int) INTS.getVolatile(stamp, cell) : stamp[cell];
+        }
+    }
+
+    public BidirectionalAstar(int rows, int cols, int[][] maze) {
+        this(MazeGrid.fromArray(rows, cols, maze));
+    }
+
+    public BidirectionalAstar(MazeGrid grid) {
+        this.grid = grid;
+        int cells = grid.getCellCount();
+        forward = new Frontier(cells);
+        backward = new Frontier(cells);
+        forward.other = backward;
+        backward.other = forward;
+    }
+
+    /**
+     * Chooses whether the backward frontier runs on its own thread (true) or takes turns with the forward
+     * frontier on the calling thread (false, the default).
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * Stops the worker thread of concurrent mode. The solver can still be used; the thread is started again
+     * when needed.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Returns the number of cells both frontiers expanded in the last search.
+     */
+    public int getExpandedCount() {
+        return forward.expanded + backward.expanded;
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath(grid.getStartCell(), grid.getGoalCell());
+        PathWriter.print("output using bidirectional A star: ", grid, path, "No path exists");
+    }
+
+    /**
+     * Searches for a shortest path between two cells.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            return null;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(forward.stamp, 0);
+            Arrays.fill(backward.stamp, 0);
+            generation = 1;
+        }
+        best.set(NO_PATH);
+        stopped = false;
+        forward.start(startCell, goalCell);
+        backward.start(goalCell, startCell);
+        if (startCell == goalCell) {
+            offer(0, startCell);
+        }
+
+        if (concurrent) {
+            runConcurrently();
+        } else {
+            // Expand the smaller frontier first, which keeps the two searches balanced
+            while (!forward.isDone() && !backward.isDone()) {
+                if (forward.openHeap.size() <= backward.openHeap.size()) {
+                    forward.expandNext();
+                } else {
+                    backward.expandNext();
+                }
+            }
+        }
+
+        long result = best.get();
+        return result == NO_PATH ? null : backtrack((int) result);
+    }
+
+    private void runConcurrently() {
+        if (pool == null) {
+            pool = new ForkJoinPool(1);
+        }
+        Future<?> backwardRun = pool.submit(backward::run);
+        try {
+            forward.run();
+        } finally {
+            stopped = true;
+            try {
+                backwardRun.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the backward search", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("backward search failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Records a path through a meeting cell if it is shorter than the best one so far.
+     */
+    private void offer(int length, int cell) {
+        long candidate = ((long) length << 32) | cell;
+        long current;
+        do {
+            current = best.get();
+            if (candidate >= current) {
+                return;
+            }
+        } while (!best.compareAndSet(current, candidate));
+    }
+
+    /**
+     * Joins the forward half of the path (start to meeting cell) and the backward half (meeting cell to goal).
+     */
+    private int[] backtrack(int meetCell) {
+        int forwardLength = 0;
+        for (int cell = meetCell; cell >= 0; cell = forward.parent[cell]) {
+            forwardLength++;
+        }
+        int backwardLength = 0;
+        for (int cell = backward.parent[meetCell]; cell >= 0; cell = backward.parent[cell]) {
+            backwardLength++;
+        }
+        int[] path = new int[forwardLength + backwardLength];
+        int index = forwardLength;
+        for (int cell = meetCell; cell >= 0; cell = forward.parent[cell]) {
+            path[--index] = cell;
+        }
+        index = forwardLength;
+        for (int cell = backward.parent[meetCell]; cell >= 0; cell = backward.parent[cell]) {
+            path[index++] = cell;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * BitParallelBfs finds shortest paths by breadth-first search over bitsets. In a maze where every step costs the
+ * same, BFS finds shortest paths without any of A*'s cost bookkeeping, and it can be run on 64 cells at a time: each
+ * row of the maze is a run of long words with one bit per cell, so a word of the frontier is moved one cell left
+ * or right with a shift, and one row up or down by reading the word above or below. The next frontier of a word is
+ *
+ *     (frontier shifted left | shifted right | word above | word below) & open & ~visited
+ *
+ * Only the words next to the current frontier are looked at in each step: the rows above, on and below a frontier
+ * row, from one word before its first frontier word to one word after its last. When those hold many words, the
+ * rows are split into bands handled on the common fork-join pool; each band writes only its own rows.
+ *
+ * The layer (distance from the source) at which each cell is reached is recorded as the cell joins the frontier,
+ * so a path is read back from the goal by stepping to a neighbour one layer lower, and the layers of a search run to
+ * completion form the distance map of the source.
+ */
+public class BitParallelBfs {
+    public static final int UNREACHABLE = -1;
+    private static final int PARALLEL_WORDS = 1 << 14; // Fewest words in a step worth splitting across threads
+    private static final int BAND_WORDS = 1 << 12;     // Words per band when a step is split
+
+    private final MazeGrid grid;
+    private final int rows;
+    private final int columns;
+    private final int wordsPerRow;
+    private final long[] open;      // Bit set for every cell that is not a wall
+    private final long[] visited;   // Bit set for every cell reached by the current search
+    private long[] frontier;        // Cells reached in the latest layer
+    private long[] next;            // Cells being reached in the layer under construction
+    private final int[] layers;     // Layer of each cell, valid where visited is set
+    private int[] frontierRows;     // Rows holding frontier bits
+    private int frontierRowCount;
+    private int[] frontierFirst;    // First and last word of each frontier row holding frontier bits
+    private int[] frontierLast;
+    private int[] nextFirst;        // The same for the layer under construction
+    private int[] nextLast;
+    private int[] candidateRows;    // Rows that may gain cells in the next layer
+    private final int[] candidateFirst; // First and last word of each candidate row that may gain cells
+    private final int[] candidateLast;
+    private final int[] rowMark;    // Step in which a row was last added to the candidates
+    private int step;
+    private int layerCount;         // Layers the last search went through
+    private boolean parallel = true;
+
+    /**
+     * Constructor for BitParallelBfs class. Packs the open cells of the maze into bitsets once; every search after
+     * that reuses them.
+     *
+     * @param grid Representation of the maze.
+     */
+    public BitParallelBfs(MazeGrid grid) {
+        this.grid = grid;
+        rows = grid.getRows();
+        columns = grid.getColumns();
+        wordsPerRow = (columns + 63) >>> 6;
+        int words = rows * wordsPerRow;
+        open = new long[words];
+        visited = new long[words];
+        frontier = new long[words];
+        next = new long[words];
+        layers = new int[grid.getCellCount()];
+        frontierRows = new int[rows];
+        frontierFirst = new int[rows];
+        frontierLast = new int[rows];
+        nextFirst = new int[rows];
+        nextLast = new int[rows];
+        candidateRows = new int[rows];
+        candidateFirst = new int[rows];
+        candidateLast = new int[rows];
+        rowMark = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                if (!grid.isWall(row * columns + col)) {
+                    open[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+                }
+            }
+        }
+    }
+
+    /**
+     * Chooses whether large steps are split across threads (true, the default) or always run on the calling thread.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns the number of layers, that is BFS steps, the last search went through.
+     */
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath(grid.getStartCell(), grid.getGoalCell());
+        PathWriter.print("output using bit-parallel BFS: ", grid, path, "No path exists");
+    }
+
+    /**
+     * Searches for a shortest path between two cells, stopping at the layer that reaches the goal.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            layerCount = 0;
+            return null;
+        }
+        run(startCell, goalCell);
+        if (!isVisited(goalCell)) {
+            return null;
+        }
+        int[] path = new int[layers[goalCell] + 1];
+        int cell = goalCell;
+        for (int i = path.length - 1; i > 0; i--) {
+            path[i] = cell;
+            // Step back to any neighbour reached one layer earlier
+            int mask = grid.getNeighborMask(cell);
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    int neighbor = grid.neighbor(cell, direction);
+                    if (isVisited(neighbor) && layers[neighbor] == i - 1) {
+                        cell = neighbor;
+                        break;
+                    }
+                }
+            }
+        }
+        path[0] = startCell;
+        return path;
+    }
+
+    /**
+     * Computes the number of steps from a cell to every cell of the maze.
+     *
+     * @param sourceCell Cell index the distances are measured from.
+     * @return The distance of each cell, or UNREACHABLE for walls and cells cut off from the source.
+     */
+    public int[] distancesFrom(int sourceCell) {
+        int[] distances = new int[grid.getCellCount()];
+        Arrays.fill(distances, UNREACHABLE);
+        if (sourceCell < 0 || grid.isWall(sourceCell)) {
+            layerCount = 0;
+            return distances;
+        }
+        run(sourceCell, -1);
+        for (int row = 0; row < rows; row++) {
+            for (int word = 0; word < wordsPerRow; word++) {
+                long bits = visited[row * wordsPerRow + word];
+                while (bits != 0) {
+                    int cell = row * columns + (word << 6) + Long.numberOfTrailingZeros(bits);
+                    distances[cell] = layers[cell];
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return distances;
+    }
+
+    private boolean isVisited(int cell) {
+        int row = cell / columns;
+        int col = cell - row * columns;
+        return (visited[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Runs the search from a source until the goal is reached, or to the end if goalCell is -1.
+     */
+    private void run(int sourceCell, int goalCell) {
+        Arrays.fill(visited, 0);
+        clearFrontier();
+        int sourceRow = sourceCell / columns;
+        int sourceCol = sourceCell - sourceRow * columns;
+        long bit = 1L << sourceCol;
+        visited[sourceRow * wordsPerRow + (sourceCol >>> 6)] = bit;
+        frontier[sourceRow * wordsPerRow + (sourceCol >>> 6)] = bit;
+        layers[sourceCell] = 0;
+        frontierRows[0] = sourceRow;
+        frontierFirst[sourceRow] = sourceCol >>> 6;
+        frontierLast[sourceRow] = sourceCol >>> 6;
+        frontierRowCount = 1;
+        int layer = 0;
+        while (frontierRowCount > 0 && (goalCell < 0 || !isVisited(goalCell))) {
+            layer++;
+            int candidates = collectCandidates();
+            int nextRowCount;
+            long words = parallel ? candidateWords(candidates) : 0;
+            if (words >= PARALLEL_WORDS) {
+                nextRowCount = expandParallel(candidates, words, layer);
+            } else {
+                nextRowCount = expandRows(0, candidates, layer, candidateRows, 0);
+            }
+            // The rows that gained cells were written over the front of the candidate list
+            clearFrontier();
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+            int[] rowSwap = frontierRows;
+            frontierRows = candidateRows;
+            candidateRows = rowSwap;
+            frontierRowCount = nextRowCount;
+            rowSwap = frontierFirst;
+            frontierFirst = nextFirst;
+            nextFirst = rowSwap;
+            rowSwap = frontierLast;
+            frontierLast = nextLast;
+            nextLast = rowSwap;
+        }
+        layerCount = layer;
+    }
+
+    /**
+     * Lists every row next to or holding a frontier bit, once each, in candidateRows, with the words of it that
+     * may gain cells.
+     */
+    private int collectCandidates() {
+        if (++step == Integer.MAX_VALUE) {
+            Arrays.fill(rowMark, 0);
+            step = 1;
+        }
+        int count = 0;
+        for (int i = 0; i < frontierRowCount; i++) {
+            int row = frontierRows[i];
+            // A frontier bit reaches at most one word to either side, through the carry between words
+            int first = Math.max(frontierFirst[row] - 1, 0);
+            int last = Math.min(frontierLast[row] + 1, wordsPerRow - 1);
+            for (int candidate = Math.max(row - 1, 0); candidate <= Math.min(row + 1, rows - 1); candidate++) {
+                if (rowMark[candidate] != step) {
+                    rowMark[candidate] = step;
+                    candidateRows[count++] = candidate;
+                    candidateFirst[candidate] = first;
+                    candidateLast[candidate] = last;
+                } else {
+                    candidateFirst[candidate] = Math.min(candidateFirst[candidate], first);
+                    candidateLast[candidate] = Math.max(candidateLast[candidate], last);
+                }
+            }
+        }
+        return count;
+    }
+
+    private long candidateWords(int candidates) {
+        long words = 0;
+        for (int i = 0; i < candidates; i++) {
+            words += candidateLast[candidateRows[i]] - candidateFirst[candidateRows[i]] + 1;
+        }
+        return words;
+    }
+
+    /**
+     * Computes the next layer for candidate rows [from, to) and records the layer of every cell it reaches.
+     * The rows that gained cells are written to out from outStart on; no more than to - from of them.
+     *
+     * @return The number of rows that gained cells.
+     */
+    private int expandRows(int from, int to, int layer, int[] out, int outStart) {
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            int row = candidateRows[i];
+            int base = row * wordsPerRow;
+            int firstGained = -1;
+            int lastGained = -1;
+            for (int word = candidateFirst[row]; word <= candidateLast[row]; word++) {
+                int at = base + word;
+                long f = frontier[at];
+                long reach = (f << 1) | (f >>> 1);
+                if (word > 0) {
+                    reach |= frontier[at - 1] >>> 63;
+                }
+                if (word < wordsPerRow - 1) {
+                    reach |= frontier[at + 1] << 63;
+                }
+                if (row > 0) {
+                    reach |= frontier[at - wordsPerRow];
+                }
+                if (row < rows - 1) {
+                    reach |= frontier[at + wordsPerRow];
+                }
+                long gainedBits = reach & open[at] & ~visited[at];
+                next[at] = gainedBits;
+                if (gainedBits != 0) {
+                    visited[at] |= gainedBits;
+                    if (firstGained < 0) {
+                        firstGained = word;
+                    }
+                    lastGained = word;
+                    int firstCell = row * columns + (word << 6);
+                    do {
+                        layers[firstCell + Long.numberOfTrailingZeros(gainedBits)] = layer;
+                        gainedBits &= gainedBits - 1;
+                    } while (gainedBits != 0);
+                }
+            }
+            if (firstGained >= 0) {
+                nextFirst[row] = firstGained;
+                nextLast[row] = lastGained;
+                // Safe to write in place: position outStart + found never passes the row being read
+                out[outStart + found++] = row;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Splits the candidate rows into bands and expands them on the common pool. A band only writes the words of
+     * its own rows and its own stretch of the row list, so the bands need no locking; the rows that gained cells
+     * are then packed to the front of the list.
+     */
+    private int expandParallel(int candidates, long words, int layer) {
+        long wanted = Math.min((words + BAND_WORDS - 1) / BAND_WORDS, ForkJoinPool.getCommonPoolParallelism() * 4L);
+        int bands = (int) Math.min(wanted, candidates);
+        int[] found = new int[bands];
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int from = (int) ((long) band * candidates / bands);
+            int to = (int) ((long) (band + 1) * candidates / bands);
+            found[band] = expandRows(from, to, layer, candidateRows, from);
+        });
+        int count = 0;
+        for (int band = 0; band < bands; band++) {
+            int from = (int) ((long) band * candidates / bands);
+            System.arraycopy(candidateRows, from, candidateRows, count, found[band]);
+            count += found[band];
+        }
+        return count;
+    }
+
+    private void clearFrontier() {
+        for (int i = 0; i < frontierRowCount; i++) {
+            int base = frontierRows[i] * wordsPerRow;
+            Arrays.fill(frontier, base + frontierFirst[frontierRows[i]], base + frontierLast[frontierRows[i]] + 1, 0);
+        }
+    }
+}
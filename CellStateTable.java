@@ -0,0 +1,234 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * CellStateTable holds per-cell search state (a cost and a few bits of flags) for the cells a search has reached,
+ * for mazes too large for per-cell arrays. It is a hash table with open addressing keyed by long cell index.
+ *
+ * The table starts on the heap. Once it would need more slots than the heap limit given to the constructor, it moves
+ * off the heap into direct buffers of 1 GiB each, so a search that reaches hundreds of millions of cells needs no
+ * larger heap; the JVM's -XX:MaxDirectMemorySize bounds it instead. {@link #clear()} moves it back to the heap for
+ * the next search.
+ */
+public class CellStateTable {
+    private static final int SLOT_BYTES = 16;         // Cell + 1 as a long (0 for an empty slot), cost, flags
+    private static final int SEGMENT_SHIFT = 26;      // Slots per off-heap segment: 2^26, or 1 GiB
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MIN_SLOTS = 1 << 10;
+
+    private final long heapSlots;    // Largest number of slots kept on the heap
+    // Slots on the heap, used while the table is small
+    private long[] keys;
+    private int[] costs;
+    private int[] flags;
+    // Slots off the heap, used once the table has spilled
+    private ByteBuffer[] segments;
+    private long capacity;           // Number of slots, a power of two
+    private long size;               // Number of cells in the table
+
+    /**
+     * Constructor for CellStateTable class.
+     *
+     * @param heapSlots Largest number of slots kept on the heap before the table moves off it; each slot takes
+     *                  16 bytes and at most half the slots are used.
+     */
+    public CellStateTable(long heapSlots) {
+        this.heapSlots = Math.max(heapSlots, MIN_SLOTS);
+        allocateHeap(MIN_SLOTS);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the table has moved off the heap.
+     */
+    public boolean isSpilled() {
+        return segments != null;
+    }
+
+    /**
+     * Returns the slot of a cell, or -1 if the cell is not in the table.
+     */
+    public long find(long cell) {
+        long key = cell + 1;
+        long mask = capacity - 1;
+        for (long slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long found = getKey(slot);
+            if (found == key) {
+                return slot;
+            }
+            if (found == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of a cell, adding the cell with the given cost and no flags if it is not in the table.
+     * Adding may move every slot, so slots found earlier must not be used afterwards.
+     */
+    public long insert(long cell, int cost) {
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+        long key = cell + 1;
+        long mask = capacity - 1;
+        for (long slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long found = getKey(slot);
+            if (found == key) {
+                return slot;
+            }
+            if (found == 0) {
+                setSlot(slot, key, cost, 0);
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    public long getCell(long slot) {
+        return getKey(slot) - 1;
+    }
+
+    public int getCost(long slot) {
+        if (segments == null) {
+            return costs[(int) slot];
+        }
+        return segment(slot).getInt(offset(slot) + 8);
+    }
+
+    public void setCost(long slot, int cost) {
+        if (segments == null) {
+            costs[(int) slot] = cost;
+        } else {
+            segment(slot).putInt(offset(slot) + 8, cost);
+        }
+    }
+
+    public int getFlags(long slot) {
+        if (segments == null) {
+            return flags[(int) slot];
+        }
+        return segment(slot).getInt(offset(slot) + 12);
+    }
+
+    public void setFlags(long slot, int value) {
+        if (segments == null) {
+            flags[(int) slot] = value;
+        } else {
+            segment(slot).putInt(offset(slot) + 12, value);
+        }
+    }
+
+    /**
+     * Empties the table and moves it back to the heap.
+     */
+    public void clear() {
+        if (segments == null) {
+            // The heap slots are kept for the next search, like the per-cell arrays of the other solvers
+            Arrays.fill(keys, 0);
+        } else {
+            allocateHeap(MIN_SLOTS);
+        }
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCosts = costs;
+        int[] oldFlags = flags;
+        ByteBuffer[] oldSegments = segments;
+        long oldCapacity = capacity;
+        long newCapacity = capacity * 2;
+        if (newCapacity <= heapSlots) {
+            allocateHeap((int) newCapacity);
+        } else {
+            allocateSpill(newCapacity);
+        }
+        size = 0;
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long key;
+            int cost;
+            int value;
+            if (oldSegments == null) {
+                key = oldKeys[(int) slot];
+                cost = oldCosts[(int) slot];
+                value = oldFlags[(int) slot];
+            } else {
+                ByteBuffer segment = oldSegments[(int) (slot >>> SEGMENT_SHIFT)];
+                int offset = offset(slot);
+                key = segment.getLong(offset);
+                cost = segment.getInt(offset + 8);
+                value = segment.getInt(offset + 12);
+            }
+            if (key != 0) {
+                long mask = capacity - 1;
+                long target = hash(key) & mask;
+                while (getKey(target) != 0) {
+                    target = (target + 1) & mask;
+                }
+                setSlot(target, key, cost, value);
+                size++;
+            }
+        }
+    }
+
+    private void allocateHeap(int slots) {
+        keys = new long[slots];
+        costs = new int[slots];
+        flags = new int[slots];
+        segments = null;
+        capacity = slots;
+    }
+
+    private void allocateSpill(long slots) {
+        ByteBuffer[] allocated = new ByteBuffer[(int) ((slots + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < allocated.length; i++) {
+            long segmentSlots = Math.min(1L << SEGMENT_SHIFT, slots - ((long) i << SEGMENT_SHIFT));
+            // Direct buffers start out zeroed, which is what an empty slot holds
+            allocated[i] = ByteBuffer.allocateDirect((int) (segmentSlots * SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        }
+        segments = allocated;
+        keys = null;
+        costs = null;
+        flags = null;
+        capacity = slots;
+    }
+
+    private long getKey(long slot) {
+        if (segments == null) {
+            return keys[(int) slot];
+        }
+        return segment(slot).getLong(offset(slot));
+    }
+
+    private void setSlot(long slot, long key, int cost, int value) {
+        if (segments == null) {
+            keys[(int) slot] = key;
+            costs[(int) slot] = cost;
+            flags[(int) slot] = value;
+        } else {
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            segment.putLong(offset, key);
+            segment.putInt(offset + 8, cost);
+            segment.putInt(offset + 12, value);
+        }
+    }
+
+    private ByteBuffer segment(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)];
+    }
+
+    private static int offset(long slot) {
+        return (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+    }
+
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
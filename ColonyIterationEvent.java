@@ -0,0 +1,32 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for every ACO iteration when flight recording is on.
+ */
+@Name("maze.ColonyIteration")
+@Label("Colony Iteration")
+@Category("Maze")
+@Description("One iteration of ants in ACOMazeSolver")
+class ColonyIterationEvent extends Event {
+    @Label("Iteration")
+    int iteration;
+
+    @Label("Ants")
+    int ants;
+
+    @Label("Ants Reaching Goal")
+    int antsSucceeded;
+
+    @Label("Iteration Best Length")
+    int iterationBest;
+
+    @Label("Best Length So Far")
+    int bestSoFar;
+
+    @Label("Pheromone Entropy")
+    double entropy;
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * ColonyMetrics holds the counters of one ACOMazeSolver run: how many ants reached the goal, the best path length
+ * of every iteration and, when tracked, how concentrated the pheromone became. For ACO, expanded counts the cells
+ * on the walks of all ants, peakOpenSize and reopened stay 0, and the phase timings cover setup and the
+ * iterations; there is no separate reconstruction.
+ */
+public class ColonyMetrics extends SearchMetrics {
+    /**
+     * Why a run ended.
+     */
+    public enum StopReason {
+        ITERATIONS,  // Ran the maximum number of iterations
+        STAGNATION,  // The best path stopped improving
+        TIME_BUDGET  // Ran out of time; the best path found so far was returned
+    }
+
+    StopReason stopReason;      // Why the last run ended, or null if it never started
+    int iterations;             // Iterations run
+    long antsRun;               // Ant walks over all iterations
+    long antsSucceeded;         // Ant walks that reached the goal
+    int[] iterationBest = new int[0];        // Shortest path (in steps) found in each iteration, or -1
+    double[] iterationEntropy = new double[0]; // Normalised pheromone entropy after each iteration, or NaN
+
+    @Override
+    void reset() {
+        super.reset();
+        iterations = 0;
+        antsRun = 0;
+        antsSucceeded = 0;
+        stopReason = null;
+    }
+
+    /**
+     * Makes room for the per-iteration values of a run.
+     */
+    void prepare(int maxIterations) {
+        if (iterationBest.length != maxIterations) {
+            iterationBest = new int[maxIterations];
+            iterationEntropy = new double[maxIterations];
+        }
+        Arrays.fill(iterationBest, -1);
+        Arrays.fill(iterationEntropy, Double.NaN);
+    }
+
+    /**
+     * Returns why the last run ended, or null if it returned before running any ants.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public long getAntsRun() {
+        return antsRun;
+    }
+
+    public long getAntsSucceeded() {
+        return antsSucceeded;
+    }
+
+    /**
+     * Returns the fraction of ant walks that reached the goal.
+     */
+    public double getSuccessRate() {
+        return antsRun == 0 ? 0 : (double) antsSucceeded / antsRun;
+    }
+
+    /**
+     * Returns the shortest path length, in steps, found in each iteration run, or -1 where no ant reached the goal.
+     */
+    public int[] getIterationBest() {
+        return Arrays.copyOf(iterationBest, iterations);
+    }
+
+    /**
+     * Returns the pheromone entropy after each iteration run, from 1 (spread evenly over every edge) towards 0
+     * (concentrated on a few edges, i.e. converged), or NaN where it was not tracked.
+     */
+    public double[] getIterationEntropy() {
+        return Arrays.copyOf(iterationEntropy, iterations);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " iterations=" + iterations + " stop=" + stopReason + " ants=" + antsRun
+                + " successRate=" + String.format(Locale.ROOT, "%.3f", getSuccessRate());
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.Arrays;
+
+/**
+ * ConnectivityIndex labels every open cell with the connected component it belongs to, so whether a path exists
+ * between two cells can be answered in constant time by comparing labels, without running a solver.
+ *
+ * The labels are found by one flood fill over the maze. Edits made through {@link #setCell} keep them up to date:
+ * opening a cell merges the components around it by relabelling all but the largest. Closing one may cut its
+ * component into as many parts as it had open neighbours, so a search starts from each of them and they take turns
+ * expanding one cell each; searches that meet are joined, and once all but one have run out of cells, the parts that
+ * ran out are complete and get new labels while the last one keeps the old label unvisited. An edit therefore costs
+ * about as much as the smaller parts, not the whole component. Labels of components that disappear are reused.
+ */
+public class ConnectivityIndex {
+    private static final int NONE = -1; // Label of a wall
+    private static final int MARK = -2; // Cells reached by search p of close are marked MARK - p
+
+    private MazeGrid grid;
+    private final int[] labels;  // Component of each cell, or NONE for walls
+    private int[] sizes;         // Number of cells in each component, by label
+    private int nextLabel;       // Lowest label never used
+    private int[] freeLabels = new int[16]; // Labels of components that have disappeared, reused first
+    private int freeCount;
+    private int componentCount;  // Number of components with at least one cell
+    private final int[] queue;   // Flood fill queue, kept between edits
+    // One search per open neighbour of a closed cell: its queue, which also lists every cell it reached, the next
+    // cell to expand, the number of cells reached, and the search it was joined to on meeting it
+    private final int[][] partQueues = new int[MazeGrid.DIRECTIONS][64];
+    private final int[] partHead = new int[MazeGrid.DIRECTIONS];
+    private final int[] partTail = new int[MazeGrid.DIRECTIONS];
+    private final int[] partJoined = new int[MazeGrid.DIRECTIONS];
+
+    /**
+     * Constructor for ConnectivityIndex class. Labels the whole maze.
+     *
+     * @param grid Representation of the maze.
+     */
+    public ConnectivityIndex(MazeGrid grid) {
+        this.grid = grid;
+        int cells = grid.getCellCount();
+        labels = new int[cells];
+        queue = new int[cells];
+        sizes = new int[16];
+        Arrays.fill(labels, NONE);
+        for (int cell = 0; cell < cells; cell++) {
+            if (labels[cell] == NONE && !grid.isWall(cell)) {
+                flood(cell, NONE, newLabel());
+            }
+        }
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns true if a path exists between two cells: both are open and in the same component.
+     */
+    public boolean isReachable(int fromCell, int toCell) {
+        return fromCell >= 0 && toCell >= 0 && labels[fromCell] != NONE && labels[fromCell] == labels[toCell];
+    }
+
+    /**
+     * Returns the label of the component a cell belongs to, or -1 for a wall.
+     */
+    public int getComponent(int cell) {
+        return labels[cell];
+    }
+
+    /**
+     * Returns the number of cells in the component of a cell, or 0 for a wall.
+     */
+    public int getComponentSize(int cell) {
+        return labels[cell] == NONE ? 0 : sizes[labels[cell]];
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Changes one cell of the maze and updates the labels.
+     *
+     * @param cell The index of the cell.
+     * @param type The new type of the cell (WALL, OPEN, START or GOAL).
+     */
+    public void setCell(int cell, int type) {
+        boolean wasWall = grid.isWall(cell);
+        grid = grid.withCell(cell, type);
+        if (wasWall && !grid.isWall(cell)) {
+            open(cell);
+        } else if (!wasWall && grid.isWall(cell)) {
+            close(cell);
+        }
+    }
+
+    /**
+     * Joins the cell to its neighbours' components, keeping the label of the largest and relabelling the rest.
+     */
+    private void open(int cell) {
+        int largest = NONE;
+        int mask = grid.getNeighborMask(cell);
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            if ((mask & (1 << direction)) != 0) {
+                int label = labels[grid.neighbor(cell, direction)];
+                if (largest == NONE || sizes[label] > sizes[largest]) {
+                    largest = label;
+                }
+            }
+        }
+        if (largest == NONE) {
+            labels[cell] = newLabel();
+            sizes[labels[cell]] = 1;
+            return;
+        }
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            if ((mask & (1 << direction)) != 0) {
+                int neighbor = grid.neighbor(cell, direction);
+                int label = labels[neighbor];
+                if (label != largest) {
+                    sizes[largest] += sizes[label];
+                    freeLabel(label);
+                    relabel(neighbor, label, largest);
+                }
+            }
+        }
+        labels[cell] = largest;
+        sizes[largest]++;
+    }
+
+    /**
+     * Removes the cell from its component and gives new labels to the parts it cut off, all but the largest
+     * unless every part has been searched to its end.
+     */
+    private void close(int cell) {
+        int label = labels[cell];
+        int remaining = sizes[label] - 1;
+        labels[cell] = NONE;
+        int parts = 0;
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            int neighbor = grid.neighborInBounds(cell, direction);
+            if (neighbor >= 0 && labels[neighbor] == label) {
+                labels[neighbor] = MARK - parts;
+                partQueues[parts][0] = neighbor;
+                partHead[parts] = 0;
+                partTail[parts] = 1;
+                partJoined[parts] = parts;
+                parts++;
+            }
+        }
+        if (parts == 0) {
+            freeLabel(label);
+            return;
+        }
+        if (parts == 1) {
+            // Nothing was cut off
+            labels[partQueues[0][0]] = label;
+            sizes[label] = remaining;
+            return;
+        }
+
+        while (activeParts(parts) > 1) {
+            for (int p = 0; p < parts; p++) {
+                if (partHead[p] < partTail[p]) {
+                    expandPart(p, label);
+                }
+            }
+        }
+
+        // The part still being searched, or else the largest, keeps the label
+        int kept = -1;
+        for (int p = 0; p < parts; p++) {
+            if (root(p) == p && (kept < 0 || isActive(p, parts) || !isActive(kept, parts)
+                    && partSize(p, parts) > partSize(kept, parts))) {
+                kept = p;
+            }
+        }
+        for (int p = 0; p < parts; p++) {
+            if (root(p) != p) {
+                continue;
+            }
+            int newLabel = p == kept ? label : newLabel();
+            int size = 0;
+            for (int q = 0; q < parts; q++) {
+                if (root(q) == p) {
+                    for (int i = 0; i < partTail[q]; i++) {
+                        labels[partQueues[q][i]] = newLabel;
+                    }
+                    size += partTail[q];
+                }
+            }
+            sizes[newLabel] = size;
+            if (p != kept) {
+                remaining -= size;
+            }
+        }
+        if (isActive(kept, parts)) {
+            // Its unvisited cells still carry the label, and everything not cut off is still in it
+            sizes[label] = remaining;
+        }
+    }
+
+    /**
+     * Expands the next cell of a search of close, joining it to any other search it meets.
+     */
+    private void expandPart(int p, int label) {
+        int cell = partQueues[p][partHead[p]++];
+        int mask = grid.getNeighborMask(cell);
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            if ((mask & (1 << direction)) != 0) {
+                int neighbor = grid.neighbor(cell, direction);
+                int neighborLabel = labels[neighbor];
+                if (neighborLabel == label) {
+                    labels[neighbor] = MARK - p;
+                    if (partTail[p] == partQueues[p].length) {
+                        partQueues[p] = Arrays.copyOf(partQueues[p], partTail[p] * 2);
+                    }
+                    partQueues[p][partTail[p]++] = neighbor;
+                } else if (neighborLabel <= MARK) {
+                    int other = root(MARK - neighborLabel);
+                    int own = root(p);
+                    if (other != own) {
+                        partJoined[Math.max(other, own)] = Math.min(other, own);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first search of the group of joined searches a search belongs to.
+     */
+    private int root(int p) {
+        while (partJoined[p] != p) {
+            p = partJoined[p];
+        }
+        return p;
+    }
+
+    /**
+     * Returns true if any search joined with the group rooted at p still has cells to expand.
+     */
+    private boolean isActive(int p, int parts) {
+        for (int q = 0; q < parts; q++) {
+            if (partHead[q] < partTail[q] && root(q) == p) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int activeParts(int parts) {
+        int active = 0;
+        for (int p = 0; p < parts; p++) {
+            if (root(p) == p && isActive(p, parts)) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private int partSize(int p, int parts) {
+        int size = 0;
+        for (int q = 0; q < parts; q++) {
+            if (root(q) == p) {
+                size += partTail[q];
+            }
+        }
+        return size;
+    }
+
+    private int newLabel() {
+        componentCount++;
+        if (freeCount > 0) {
+            return freeLabels[--freeCount];
+        }
+        if (nextLabel == sizes.length) {
+            sizes = Arrays.copyOf(sizes, nextLabel * 2);
+        }
+        return nextLabel++;
+    }
+
+    private void freeLabel(int label) {
+        sizes[label] = 0;
+        componentCount--;
+        if (freeCount == freeLabels.length) {
+            freeLabels = Arrays.copyOf(freeLabels, freeCount * 2);
+        }
+        freeLabels[freeCount++] = label;
+    }
+
+    /**
+     * Gives a new label to every cell reachable from a cell through cells labelled oldLabel.
+     */
+    private void flood(int fromCell, int oldLabel, int newLabel) {
+        int head = 0;
+        int tail = 0;
+        labels[fromCell] = newLabel;
+        queue[tail++] = fromCell;
+        while (head < tail) {
+            int cell = queue[head++];
+            int mask = grid.getNeighborMask(cell);
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    int neighbor = grid.neighbor(cell, direction);
+                    if (labels[neighbor] == oldLabel) {
+                        labels[neighbor] = newLabel;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        sizes[newLabel] = tail;
+    }
+
+    private void relabel(int fromCell, int oldLabel, int newLabel) {
+        int size = sizes[newLabel];
+        flood(fromCell, oldLabel, newLabel);
+        sizes[newLabel] = size;
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * DStarLite finds shortest paths on a maze that changes between queries, using D* Lite. Instead of searching
+ * again from scratch after a cell flips between wall and open, it repairs the distances of the previous search,
+ * so replanning costs roughly in proportion to the cells whose distance to the goal actually changed.
+ *
+ * The search runs backward from the goal and keeps, for every cell it has reached, g (the distance to the goal
+ * as last computed) and rhs (the distance implied by the cell's neighbours). Cells where the two disagree are
+ * inconsistent and wait in a priority queue; an edit only makes the cells around it inconsistent, and the next
+ * {@link #findPath()} settles just as many of them as it needs to prove the path from the start shortest.
+ *
+ * Moving the start is cheap: the queue keys are corrected by an offset (km) rather than recomputed. Moving the
+ * goal changes every distance, so it starts the search afresh.
+ */
+public class DStarLite {
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+
+    private MazeGrid grid;
+    private int startCell, goalCell;
+    private int lastStart;        // Start cell when km was last brought up to date
+    private int km;               // Sum of the heuristic distances the start has moved
+    // Per-search state, indexed by cell and valid only where stamp equals the current generation;
+    // elsewhere g and rhs are both infinite
+    private final int[] g;        // Distance to the goal as last settled
+    private final int[] rhs;      // Distance to the goal through the best neighbour
+    private final int[] stamp;
+    private int generation;
+    private final IndexedMinHeap queue; // Inconsistent cells keyed by (k1, k2)
+    private int expanded;         // Cells settled since the last findPath
+
+    public DStarLite(int rows, int cols, int[][] maze) {
+        this(MazeGrid.fromArray(rows, cols, maze));
+    }
+
+    /**
+     * Constructor for DStarLite class. The start and goal are those of the maze.
+     *
+     * @param grid Representation of the maze.
+     */
+    public DStarLite(MazeGrid grid) {
+        this.grid = grid;
+        int cells = grid.getCellCount();
+        g = new int[cells];
+        rhs = new int[cells];
+        stamp = new int[cells];
+        queue = new IndexedMinHeap(cells);
+        startCell = grid.getStartCell();
+        goalCell = grid.getGoalCell();
+        restart();
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    public int getStartCell() {
+        return startCell;
+    }
+
+    public int getGoalCell() {
+        return goalCell;
+    }
+
+    /**
+     * Returns the number of cells the last findPath settled.
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * Changes one cell of the maze, for example to put up or knock down a wall. Only the cell and its neighbours
+     * are marked for repair; the work happens in the next {@link #findPath()}.
+     *
+     * @param cell The index of the cell.
+     * @param type The new type of the cell (WALL, OPEN, START or GOAL). START and GOAL only make the cell open;
+     *             use moveStart and moveGoal to move the end points.
+     */
+    public void setCell(int cell, int type) {
+        boolean wasWall = grid.isWall(cell);
+        grid = grid.withCell(cell, type);
+        if (wasWall == grid.isWall(cell)) {
+            return;
+        }
+        updateCell(cell);
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            int neighbor = grid.neighborInBounds(cell, direction);
+            if (neighbor >= 0) {
+                updateCell(neighbor);
+            }
+        }
+    }
+
+    /**
+     * Moves the start, as when the agent following the path has taken some steps. The previous search is kept.
+     *
+     * @param cell Cell index of the new start position.
+     */
+    public void moveStart(int cell) {
+        startCell = cell;
+        if (lastStart >= 0 && cell >= 0) {
+            km += grid.manhattan(lastStart, cell);
+        }
+        lastStart = cell;
+    }
+
+    /**
+     * Moves the goal. Every distance changes with it, so the next findPath searches from scratch.
+     *
+     * @param cell Cell index of the new goal position.
+     */
+    public void moveGoal(int cell) {
+        if (cell != goalCell) {
+            goalCell = cell;
+            restart();
+        }
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath();
+        PathWriter.print("output using D* Lite: ", grid, path, "No path exists");
+    }
+
+    /**
+     * Brings the search up to date with the edits and moves made since the last call and returns a shortest path.
+     *
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public int[] findPath() {
+        expanded = 0;
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            return null;
+        }
+        computeShortestPath();
+        if (getG(startCell) >= INFINITY) {
+            return null;
+        }
+        int[] path = new int[getG(startCell) + 1];
+        path[0] = startCell;
+        for (int i = 1; i < path.length; i++) {
+            // Step to the neighbour that is one closer to the goal
+            int cell = path[i - 1];
+            int mask = grid.getNeighborMask(cell);
+            int next = -1;
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    int neighbor = grid.neighbor(cell, direction);
+                    if (next < 0 || getG(neighbor) < getG(next)) {
+                        next = neighbor;
+                    }
+                }
+            }
+            path[i] = next;
+        }
+        return path;
+    }
+
+    /**
+     * Forgets the previous search and queues the goal, the only cell whose distance is known up front.
+     */
+    private void restart() {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        queue.clear();
+        km = 0;
+        lastStart = startCell;
+        if (goalCell >= 0) {
+            setRhs(goalCell, 0);
+            queue.insert(goalCell, key1(goalCell), key2(goalCell));
+        }
+    }
+
+    /**
+     * Settles inconsistent cells in key order until the start is consistent and nothing queued could still
+     * shorten its distance.
+     */
+    private void computeShortestPath() {
+        while (!queue.isEmpty() && (keyBelowStart() || getRhs(startCell) != getG(startCell))) {
+            int cell = queue.peek();
+            int oldK1 = queue.peekF();
+            int oldK2 = queue.peekG();
+            int newK1 = key1(cell);
+            int newK2 = key2(cell);
+            if (oldK1 < newK1 || (oldK1 == newK1 && oldK2 < newK2)) {
+                // Queued before the start moved; its key only needs catching up
+                queue.updateKey(cell, newK1, newK2);
+                continue;
+            }
+            expanded++;
+            int cellG = getG(cell);
+            int cellRhs = getRhs(cell);
+            if (cellG > cellRhs) {
+                // Overconsistent: the distance went down; settle it and pass it on
+                setG(cell, cellRhs);
+                queue.remove(cell);
+                updateNeighbors(cell);
+            } else {
+                // Underconsistent: the distance went up; forget it and let the neighbours offer a new one
+                setG(cell, INFINITY);
+                updateCell(cell);
+                updateNeighbors(cell);
+            }
+        }
+    }
+
+    private boolean keyBelowStart() {
+        int topK1 = queue.peekF();
+        int startK1 = key1(startCell);
+        return topK1 < startK1 || (topK1 == startK1 && queue.peekG() < key2(startCell));
+    }
+
+    private void updateNeighbors(int cell) {
+        int mask = grid.getNeighborMask(cell);
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            if ((mask & (1 << direction)) != 0) {
+                updateCell(grid.neighbor(cell, direction));
+            }
+        }
+    }
+
+    /**
+     * Recomputes a cell's rhs from its neighbours and queues the cell if it is inconsistent.
+     */
+    private void updateCell(int cell) {
+        if (cell != goalCell) {
+            int best = INFINITY;
+            int mask = grid.getNeighborMask(cell);
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    best = Math.min(best, getG(grid.neighbor(cell, direction)) + 1);
+                }
+            }
+            setRhs(cell, best);
+        }
+        boolean queued = queue.contains(cell);
+        if (getG(cell) != getRhs(cell)) {
+            if (queued) {
+                queue.updateKey(cell, key1(cell), key2(cell));
+            } else {
+                queue.insert(cell, key1(cell), key2(cell));
+            }
+        } else if (queued) {
+            queue.remove(cell);
+        }
+    }
+
+    private int key1(int cell) {
+        int distance = Math.min(getG(cell), getRhs(cell));
+        return distance >= INFINITY ? INFINITY + km : distance + grid.manhattan(startCell, cell) + km;
+    }
+
+    private int key2(int cell) {
+        return Math.min(getG(cell), getRhs(cell));
+    }
+
+    private int getG(int cell) {
+        return stamp[cell] == generation ? g[cell] : INFINITY;
+    }
+
+    private int getRhs(int cell) {
+        return stamp[cell] == generation ? rhs[cell] : INFINITY;
+    }
+
+    private void setG(int cell, int value) {
+        touch(cell);
+        g[cell] = value;
+    }
+
+    private void setRhs(int cell, int value) {
+        touch(cell);
+        rhs[cell] = value;
+    }
+
+    private void touch(int cell) {
+        if (stamp[cell] != generation) {
+            stamp[cell] = generation;
+            g[cell] = INFINITY;
+            rhs[cell] = INFINITY;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * DistanceField holds the exact number of steps from every cell of a maze to one goal cell, found by a
+ * breadth-first search outward from the goal. Used as a heuristic it never misleads the way Manhattan distance
+ * does around walls: A* guided by it only expands cells on shortest paths, and ants are drawn along the real
+ * way to the goal.
+ *
+ * The search runs level by level. Levels with many cells are split across the common fork-join pool, and the
+ * threads claim cells with a compare-and-set so every cell is added to the next level exactly once.
+ */
+public final class DistanceField {
+    public static final int UNREACHABLE = -1;
+    private static final int PARALLEL_LEVEL = 4096; // Smallest level worth splitting across threads
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final MazeGrid grid;
+    private final int goalCell;
+    private final int[] distances; // Steps from each cell to the goal, or UNREACHABLE
+
+    private DistanceField(MazeGrid grid, int goalCell, int[] distances) {
+        this.grid = grid;
+        this.goalCell = goalCell;
+        this.distances = distances;
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    public int getGoalCell() {
+        return goalCell;
+    }
+
+    /**
+     * Returns the number of steps from a cell to the goal, or UNREACHABLE for walls and cells cut off from the goal.
+     */
+    public int distance(int cell) {
+        return distances[cell];
+    }
+
+    /**
+     * Computes the distance field of a goal cell.
+     *
+     * @param grid     Representation of the maze.
+     * @param goalCell Cell index of the goal position.
+     * @return The field; every cell is UNREACHABLE if the goal is a wall.
+     */
+    public static DistanceField build(MazeGrid grid, int goalCell) {
+        int[] distances = new int[grid.getCellCount()];
+        Arrays.fill(distances, UNREACHABLE);
+        if (goalCell < 0 || grid.isWall(goalCell)) {
+            return new DistanceField(grid, goalCell, distances);
+        }
+        // The queue holds the levels one after another: the current level is queue[from, to)
+        int[] queue = new int[grid.getCellCount()];
+        distances[goalCell] = 0;
+        queue[0] = goalCell;
+        int from = 0;
+        int to = 1;
+        int level = 0;
+        while (from < to) {
+            int tail;
+            if (to - from >= PARALLEL_LEVEL) {
+                tail = expandParallel(grid, distances, queue, from, to, level + 1);
+            } else {
+                tail = to;
+                for (int i = from; i < to; i++) {
+                    int cell = queue[i];
+                    int mask = grid.getNeighborMask(cell);
+                    for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                        if ((mask & (1 << direction)) != 0) {
+                            int neighbor = grid.neighbor(cell, direction);
+                            if (distances[neighbor] == UNREACHABLE) {
+                                distances[neighbor] = level + 1;
+                                queue[tail++] = neighbor;
+                            }
+                        }
+                    }
+                }
+            }
+            from = to;
+            to = tail;
+            level++;
+        }
+        return new DistanceField(grid, goalCell, distances);
+    }
+
+    /**
+     * Expands one level on several threads. Each chunk of the level collects the cells it claims in its own buffer,
+     * and the buffers are appended to the queue afterwards.
+     *
+     * @return The end of the next level in the queue.
+     */
+    private static int expandParallel(MazeGrid grid, int[] distances, int[] queue, int from, int to, int nextLevel) {
+        int chunks = Math.max(1, Math.min((to - from) / (PARALLEL_LEVEL / 4), ForkJoinPool.getCommonPoolParallelism() * 4));
+        int[][] claimed = new int[chunks][];
+        int[] counts = new int[chunks];
+        int levelSize = to - from;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = from + (int) ((long) chunk * levelSize / chunks);
+            int end = from + (int) ((long) (chunk + 1) * levelSize / chunks);
+            // A cell reached by a level has at most three neighbours not in an earlier level
+            int[] buffer = new int[(end - start) * 3];
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                int cell = queue[i];
+                int mask = grid.getNeighborMask(cell);
+                for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                    if ((mask & (1 << direction)) != 0) {
+                        int neighbor = grid.neighbor(cell, direction);
+                        if ((int) INTS.getOpaque(distances, neighbor) == UNREACHABLE
+                                && INTS.compareAndSet(distances, neighbor, UNREACHABLE, nextLevel)) {
+                            buffer[count++] = neighbor;
+                        }
+                    }
+                }
+            }
+            claimed[chunk] = buffer;
+            counts[chunk] = count;
+        });
+        int tail = to;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            System.arraycopy(claimed[chunk], 0, queue, tail, counts[chunk]);
+            tail += counts[chunk];
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DistanceFieldCache keeps the distance fields of the most recently used goals of one maze, so that queries sharing
+ * a goal build its field only once. A field takes four bytes per cell, so the cache holds a fixed number of them
+ * and drops the least recently used.
+ */
+public class DistanceFieldCache {
+    private final MazeGrid grid;
+    private final LinkedHashMap<Integer, DistanceField> fields;
+
+    /**
+     * Constructor for DistanceFieldCache class.
+     *
+     * @param grid      Representation of the maze.
+     * @param maxFields Largest number of fields kept.
+     */
+    public DistanceFieldCache(MazeGrid grid, int maxFields) {
+        if (maxFields < 1) {
+            throw new IllegalArgumentException("cache must hold at least one field");
+        }
+        this.grid = grid;
+        this.fields = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DistanceField> eldest) {
+                return size() > maxFields;
+            }
+        };
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the distance field of a goal cell, building it on first use.
+     */
+    public synchronized DistanceField get(int goalCell) {
+        DistanceField field = fields.get(goalCell);
+        if (field == null) {
+            field = DistanceField.build(grid, goalCell);
+            fields.put(goalCell, field);
+        }
+        return field;
+    }
+
+    public synchronized void clear() {
+        fields.clear();
+    }
+}
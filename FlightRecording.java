@@ -0,0 +1,57 @@
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * FlightRecording tells the solvers whether a flight recording is running, so that they only create their JFR events
+ * when one is. Loading the first event class sets up the event machinery, which takes a few hundred milliseconds
+ * when the recorder is off; this class only touches FlightRecorder.isInitialized until the recorder is up, then
+ * follows recordings through a listener.
+ */
+final class FlightRecording {
+    private static volatile boolean listening;         // Whether the listener below is registered
+    private static volatile boolean running;           // Whether any recording is running
+
+    private FlightRecording() {
+    }
+
+    /**
+     * Returns whether a flight recording is running. Cheap enough to call for every search and every colony iteration.
+     */
+    static boolean isRunning() {
+        if (!listening) {
+            // No recording can have started before the recorder is initialized
+            if (!FlightRecorder.isInitialized()) {
+                return false;
+            }
+            listen();
+        }
+        return running;
+    }
+
+    private static synchronized void listen() {
+        if (listening) {
+            return;
+        }
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                update();
+            }
+        });
+        update();
+        // Load the event classes now rather than inside the first recorded search
+        new SearchEvent();
+        new ColonyIterationEvent();
+        listening = true;
+    }
+
+    private static void update() {
+        boolean any = false;
+        for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+            any |= recording.getState() == RecordingState.RUNNING;
+        }
+        running = any;
+    }
+}
@@ -0,0 +1,451 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HashDistributedAstar finds shortest paths with hash-distributed A* (HDA*), so that one long query can keep
+ * several cores busy. Every cell is owned by one worker thread, chosen by a hash of the cell index. A worker keeps
+ * the open list, costs and parents of its own cells only: when it expands a cell, neighbours it owns go straight
+ * into its open list and the others are sent, in batches, to their owners through lock-free queues.
+ *
+ * Each worker expands its best cell without waiting for the others, so a cell may be expanded again after a
+ * cheaper route to it arrives. The cost of the best path to the goal found so far is shared, and no worker expands
+ * a cell whose f is not below it. The search is over when every worker has run out of such cells and no batch is
+ * still on its way; the Manhattan heuristic never overestimates, so the best path is then shortest.
+ */
+public class HashDistributedAstar {
+    private static final int BATCH_CELLS = 64;    // Cells per batch sent to another worker
+    private static final int FLUSH_INTERVAL = 64;  // Expansions between sending partly filled batches
+    private static final long ACTIVE = 1L << 32;  // One busy worker in the termination counter
+    private static final int IDLE_SPINS = 64;      // Inbox checks an idle worker makes, yielding, before blocking
+    private static final long IDLE_WAIT_NANOS = 1_000_000L; // Longest an idle worker blocks between checks
+    private static final int[] WAKE = new int[0];  // Put in every inbox to wake idle workers when the search ends
+    private static final int NO_PATH = Integer.MAX_VALUE;
+
+    private final MazeGrid grid;
+    private final int threads;
+    private final Worker[] workers;
+    // Per-search state, indexed by cell and written only by the cell's owner; valid where stamp is current
+    private final int[] g;        // Cost from start cell to the cell
+    private final int[] parent;   // Cell the search reached the cell from
+    private final int[] stamp;    // Generation in which the cell's cost was last written
+    private int generation;
+    private int goalCell;
+    private final AtomicInteger bestCost = new AtomicInteger(NO_PATH); // Length of the best path found so far
+    // Busy workers in the high 32 bits and batches sent but not yet handled in the low 32; zero once the search
+    // is over. Both live in one word so that no worker can see one change without the other.
+    private final AtomicLong pending = new AtomicLong();
+    private volatile boolean failed;    // Set if a worker throws, so the others stop waiting for it
+    private ExecutorService pool;       // Runs the workers, kept between searches
+
+    /**
+     * A min-heap of open cells keyed by f, and among equal f by h, so that the cell nearest the goal comes first
+     * and a first path, which bounds everything else, is found early. A cell is pushed again whenever its cost
+     * drops, and entries whose f no longer matches the cell's cost are skipped when they come out.
+     */
+    private static final class OpenList {
+        private long[] keys = new long[64]; // f in the high 32 bits, h in the low 32
+        private int[] cells = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        long peekKey() {
+            return keys[0];
+        }
+
+        int peekCell() {
+            return cells[0];
+        }
+
+        void push(int f, int h, int cell) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            long key = ((long) f << 32) | h;
+            int i = size++;
+            while (i > 0 && keys[(i - 1) >>> 1] > key) {
+                keys[i] = keys[(i - 1) >>> 1];
+                cells[i] = cells[(i - 1) >>> 1];
+                i = (i - 1) >>> 1;
+            }
+            keys[i] = key;
+            cells[i] = cell;
+        }
+
+        int poll() {
+            int top = cells[0];
+            long lastKey = keys[--size];
+            int lastCell = cells[size];
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= lastKey) {
+                    break;
+                }
+                keys[i] = keys[child];
+                cells[i] = cells[child];
+                i = child;
+            }
+            keys[i] = lastKey;
+            cells[i] = lastCell;
+            return top;
+        }
+    }
+
+    /**
+     * One worker: the open list of the cells it owns, its inbox, and a batch being filled for every other worker.
+     */
+    private final class Worker implements Runnable {
+        private final int id;
+        private final OpenList open = new OpenList();
+        // Batches from other workers; an idle worker blocks on it until a batch or WAKE arrives
+        private final LinkedBlockingQueue<int[]> inbox = new LinkedBlockingQueue<>();
+        private final int[][] outgoing;  // Batch for each worker: cell, cost and parent, three ints per cell
+        private final int[] outgoingSize;
+        private int expanded;            // Cells expanded in the last search
+
+        Worker(int id) {
+            this.id = id;
+            outgoing = new int[threads][BATCH_CELLS * 3];
+            outgoingSize = new int[threads];
+        }
+
+        @Override
+        public void run() {
+            try {
+                work();
+            } catch (RuntimeException | Error e) {
+                failed = true;
+                wakeAll();
+                throw e;
+            }
+        }
+
+        private void work() {
+            int sinceFlush = 0;
+            while (!failed) {
+                int[] batch;
+                while ((batch = inbox.poll()) != null) {
+                    if (batch != WAKE) {
+                        receive(batch);
+                        handled(-1);
+                    }
+                }
+                if (hasWork()) {
+                    expandNext();
+                    if (++sinceFlush == FLUSH_INTERVAL) {
+                        flushAll();
+                        sinceFlush = 0;
+                        // Gives workers sharing a core their turn, so none runs far ahead of the costs the
+                        // others would send it; with a core per worker this returns at once
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                // Nothing left below the best path: pass on what is buffered and wait for batches or the end
+                flushAll();
+                sinceFlush = 0;
+                handled(-ACTIVE);
+                for (int spins = 0; ; spins++) {
+                    if (pending.get() == 0 || failed) {
+                        return;
+                    }
+                    // A batch usually follows soon, so the worker yields a few times before it blocks. Whoever
+                    // ends the search puts WAKE in every inbox after the counter reaches zero, so a blocked worker
+                    // returns with a batch, or with WAKE once the search is over
+                    try {
+                        if (spins < IDLE_SPINS) {
+                            Thread.yield();
+                            batch = inbox.poll();
+                        } else {
+                            batch = inbox.poll(IDLE_WAIT_NANOS, TimeUnit.NANOSECONDS);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failed = true;
+                        wakeAll();
+                        return;
+                    }
+                    if (batch != null && batch != WAKE) {
+                        // Busy again before the batch stops counting, so the counter never reads zero meanwhile
+                        pending.addAndGet(ACTIVE);
+                        receive(batch);
+                        handled(-1);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns true if the open list holds a cell worth expanding, dropping outdated entries on the way.
+         */
+        private boolean hasWork() {
+            int bound = bestCost.get();
+            while (!open.isEmpty()) {
+                long key = open.peekKey();
+                int f = (int) (key >>> 32);
+                int cell = open.peekCell();
+                if (f >= bound) {
+                    return false;
+                }
+                if (f == g[cell] + (int) key) {
+                    return true;
+                }
+                open.poll();
+            }
+            return false;
+        }
+
+        private void expandNext() {
+            int cell = open.poll();
+            expanded++;
+            int newG = g[cell] + 1;
+            int mask = grid.getNeighborMask(cell);
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    int neighbor = grid.neighbor(cell, direction);
+                    int owner = ownerOf(neighbor);
+                    if (owner == id) {
+                        relax(neighbor, newG, cell);
+                    } else {
+                        send(owner, neighbor, newG, cell);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Records a route to a cell this worker owns if it is cheaper than the known one, and opens the cell.
+         */
+        void relax(int cell, int cost, int from) {
+            if (stamp[cell] == generation && g[cell] <= cost) {
+                return;
+            }
+            stamp[cell] = generation;
+            g[cell] = cost;
+            parent[cell] = from;
+            if (cell == goalCell) {
+                // Only the goal's owner writes the best cost, so a plain set cannot lose a smaller value
+                if (cost < bestCost.get()) {
+                    bestCost.set(cost);
+                }
+                return;
+            }
+            int h = grid.manhattan(cell, goalCell);
+            if (cost + h < bestCost.get()) {
+                open.push(cost + h, h, cell);
+            }
+        }
+
+        private void receive(int[] batch) {
+            int length = batch.length;
+            for (int i = 0; i < length && batch[i] >= 0; i += 3) {
+                relax(batch[i], batch[i + 1], batch[i + 2]);
+            }
+        }
+
+        private void send(int owner, int cell, int cost, int from) {
+            int[] batch = outgoing[owner];
+            int size = outgoingSize[owner];
+            batch[size] = cell;
+            batch[size + 1] = cost;
+            batch[size + 2] = from;
+            outgoingSize[owner] = size + 3;
+            if (size + 3 == batch.length) {
+                flush(owner);
+            }
+        }
+
+        private void flush(int owner) {
+            int size = outgoingSize[owner];
+            if (size == 0) {
+                return;
+            }
+            int[] batch = outgoing[owner];
+            if (size < batch.length) {
+                batch[size] = -1; // End marker of a partly filled batch
+            }
+            outgoing[owner] = new int[BATCH_CELLS * 3];
+            outgoingSize[owner] = 0;
+            // Counted before it is visible, so the search cannot look finished while the batch is on its way
+            pending.incrementAndGet();
+            workers[owner].inbox.add(batch);
+        }
+
+        /**
+         * Adds to the termination counter, waking every worker if that ends the search.
+         */
+        private void handled(long delta) {
+            if (pending.addAndGet(delta) == 0) {
+                wakeAll();
+            }
+        }
+
+        private void flushAll() {
+            for (int owner = 0; owner < threads; owner++) {
+                flush(owner);
+            }
+        }
+    }
+
+    /**
+     * Constructor for HashDistributedAstar class.
+     *
+     * @param grid    Representation of the maze.
+     * @param threads Number of worker threads, each owning a share of the cells.
+     */
+    public HashDistributedAstar(MazeGrid grid, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("at least one thread is needed");
+        }
+        this.grid = grid;
+        this.threads = threads;
+        int cells = grid.getCellCount();
+        g = new int[cells];
+        parent = new int[cells];
+        stamp = new int[cells];
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of cells all workers expanded in the last search, counting repeated expansions.
+     */
+    public int getExpandedCount() {
+        int expanded = 0;
+        for (Worker worker : workers) {
+            expanded += worker.expanded;
+        }
+        return expanded;
+    }
+
+    /**
+     * Stops the worker threads. The solver can still be used; the threads are started again when needed.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath(grid.getStartCell(), grid.getGoalCell());
+        PathWriter.print("output using HDA*: ", grid, path, "No path exists");
+    }
+
+    /**
+     * Searches for a shortest path between two cells on all worker threads. Queries must not overlap: the
+     * solver runs one search at a time.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            return null;
+        }
+        if (startCell == goalCell) {
+            return new int[]{startCell};
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        this.goalCell = goalCell;
+        bestCost.set(NO_PATH);
+        failed = false;
+        for (Worker worker : workers) {
+            worker.open.clear();
+            worker.inbox.clear(); // Only WAKE markers of the last search can be left
+            worker.expanded = 0;
+        }
+        pending.set(threads * ACTIVE);
+        workers[ownerOf(startCell)].relax(startCell, 0, -1);
+
+        if (pool == null) {
+            // One thread per worker, each running its worker to the end: a fork-join pool may leave a worker's
+            // task unstarted while the others block waiting for it
+            pool = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "hda-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        List<Future<?>> runs = new ArrayList<>(threads);
+        for (Worker worker : workers) {
+            runs.add(pool.submit(worker));
+        }
+        for (Future<?> run : runs) {
+            try {
+                run.get();
+            } catch (InterruptedException e) {
+                failed = true;
+                wakeAll();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the workers", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("search worker failed", e.getCause());
+            }
+        }
+        return bestCost.get() == NO_PATH ? null : backtrack();
+    }
+
+    private void wakeAll() {
+        for (Worker worker : workers) {
+            worker.inbox.add(WAKE);
+        }
+    }
+
+    /**
+     * Returns the worker that owns a cell. The hash spreads neighbouring cells over all workers, so every
+     * worker's share of the frontier stays about the same size.
+     */
+    private int ownerOf(int cell) {
+        return (int) (((cell * 0x9E3779B97F4A7C15L) >>> 32) % threads);
+    }
+
+    /**
+     * Follows the parents back from the goal. Each parent was set from a route at least one step cheaper than the
+     * cell's own, so the walk reaches the start in exactly the goal's cost.
+     */
+    private int[] backtrack() {
+        int[] path = new int[g[goalCell] + 1];
+        int cell = goalCell;
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = cell;
+            cell = parent[cell];
+        }
+        return path;
+    }
+}
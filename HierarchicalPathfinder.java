@@ -0,0 +1,497 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * HierarchicalPathfinder answers path queries on very large mazes with HPA* (hierarchical path-finding A*).
+ * The maze is cut into square clusters. Where two clusters touch, every run of open cell pairs across the border
+ * becomes an entrance with one or two transitions, and the cells on both sides of a transition become abstract nodes.
+ * Inside each cluster the distances between its abstract nodes are precomputed. A query searches this small abstract
+ * graph and then refines each abstract edge into cells with a search confined to one cluster, so its cost grows with
+ * the path length rather than with the maze area.
+ * Paths are near-optimal: they may be a little longer than A*'s, since they pass through the chosen transitions.
+ * Changing a cell only rebuilds the borders of its cluster and the clusters sharing them.
+ */
+public class HierarchicalPathfinder {
+    private static final int DEFAULT_CLUSTER_SIZE = 32;
+    private static final int LONG_ENTRANCE = 6; // Entrances at least this long get a transition at each end
+
+    private MazeGrid grid;
+    private final int clusterSize;
+    private final int clusterRows;     // Number of cluster rows
+    private final int clusterColumns;  // Number of cluster columns
+    // Transitions across the border below cluster k (column of each) and to the right of cluster k (row of each)
+    private final int[][] bottomTransitions;
+    private final int[][] rightTransitions;
+    // Abstract nodes of cluster k: sorted cell indices, inter-cluster partners of each, and the distance matrix
+    private final int[][] nodeCells;
+    private final int[][][] partners;
+    private final int[][] intraDistances;
+    private final ThreadLocal<ClusterSearch> searches;
+
+    public HierarchicalPathfinder(MazeGrid grid) {
+        this(grid, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Constructor for HierarchicalPathfinder class. Builds the abstract graph, spreading the clusters over all cores.
+     *
+     * @param grid        The maze.
+     * @param clusterSize Side of a cluster, in cells.
+     */
+    public HierarchicalPathfinder(MazeGrid grid, int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("cluster size must be at least 2");
+        }
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        clusterRows = (grid.getRows() + clusterSize - 1) / clusterSize;
+        clusterColumns = (grid.getColumns() + clusterSize - 1) / clusterSize;
+        int clusters = clusterRows * clusterColumns;
+        bottomTransitions = new int[clusters][];
+        rightTransitions = new int[clusters][];
+        nodeCells = new int[clusters][];
+        partners = new int[clusters][][];
+        intraDistances = new int[clusters][];
+        searches = ThreadLocal.withInitial(() -> new ClusterSearch(clusterSize));
+
+        IntStream.range(0, clusters).parallel().forEach(this::buildBorders);
+        IntStream.range(0, clusters).parallel().forEach(this::buildCluster);
+    }
+
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the number of abstract nodes in the graph.
+     */
+    public int getAbstractNodeCount() {
+        int count = 0;
+        for (int[] cells : nodeCells) {
+            count += cells.length;
+        }
+        return count;
+    }
+
+    /**
+     * Changes one cell of the maze and rebuilds only the parts of the abstract graph it can affect:
+     * the four borders of its cluster, then that cluster and its four neighbours.
+     *
+     * @param cell The index of the cell.
+     * @param type The new type of the cell (WALL, OPEN, START or GOAL).
+     */
+    public void setCell(int cell, int type) {
+        grid = grid.withCell(cell, type);
+        int clusterRow = grid.row(cell) / clusterSize;
+        int clusterCol = grid.col(cell) / clusterSize;
+        int k = clusterRow * clusterColumns + clusterCol;
+        buildBorders(k);
+        if (clusterRow > 0) {
+            buildBorders(k - clusterColumns);
+        }
+        if (clusterCol > 0) {
+            buildBorders(k - 1);
+        }
+        buildCluster(k);
+        for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+            int neighbor = neighborCluster(clusterRow, clusterCol, direction);
+            if (neighbor >= 0) {
+                buildCluster(neighbor);
+            }
+        }
+    }
+
+    private int neighborCluster(int clusterRow, int clusterCol, int direction) {
+        switch (direction) {
+            case MazeGrid.UP:
+                return clusterRow > 0 ? (clusterRow - 1) * clusterColumns + clusterCol : -1;
+            case MazeGrid.DOWN:
+                return clusterRow < clusterRows - 1 ? (clusterRow + 1) * clusterColumns + clusterCol : -1;
+            case MazeGrid.LEFT:
+                return clusterCol > 0 ? clusterRow * clusterColumns + clusterCol - 1 : -1;
+            default:
+                return clusterCol < clusterColumns - 1 ? clusterRow * clusterColumns + clusterCol + 1 : -1;
+        }
+    }
+
+    private int clusterOf(int cell) {
+        return (grid.row(cell) / clusterSize) * clusterColumns + grid.col(cell) / clusterSize;
+    }
+
+    /**
+     * Finds the transitions across the bottom and right borders of cluster k.
+     */
+    private void buildBorders(int k) {
+        int top = (k / clusterColumns) * clusterSize;
+        int left = (k % clusterColumns) * clusterSize;
+        int bottom = Math.min(top + clusterSize, grid.getRows());   // First row below the cluster
+        int right = Math.min(left + clusterSize, grid.getColumns()); // First column right of the cluster
+
+        bottomTransitions[k] = bottom < grid.getRows()
+                ? findTransitions(grid.index(bottom - 1, left), grid.index(bottom, left), 1, right - left)
+                : new int[0];
+        rightTransitions[k] = right < grid.getColumns()
+                ? findTransitions(grid.index(top, right - 1), grid.index(top, right), grid.getColumns(), bottom - top)
+                : new int[0];
+    }
+
+    /**
+     * Scans a border between two lines of cells and places transitions on every run where both sides are open.
+     *
+     * @param first  First cell on the near side of the border.
+     * @param facing First cell on the far side of the border.
+     * @param step   Index step along the border.
+     * @param length Length of the border.
+     * @return Offsets along the border of the transitions.
+     */
+    private int[] findTransitions(int first, int facing, int step, int length) {
+        int[] offsets = new int[length];
+        int count = 0;
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = i < length && !grid.isWall(first + i * step) && !grid.isWall(facing + i * step);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runLength = i - runStart;
+                if (runLength >= LONG_ENTRANCE) {
+                    offsets[count++] = runStart;
+                    offsets[count++] = i - 1;
+                } else {
+                    offsets[count++] = runStart + runLength / 2;
+                }
+                runStart = -1;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Collects the abstract nodes of cluster k from its four borders and computes the distances between them.
+     */
+    private void buildCluster(int k) {
+        int clusterRow = k / clusterColumns;
+        int clusterCol = k % clusterColumns;
+        int top = clusterRow * clusterSize;
+        int left = clusterCol * clusterSize;
+        int bottom = Math.min(top + clusterSize, grid.getRows()) - 1;
+        int right = Math.min(left + clusterSize, grid.getColumns()) - 1;
+        int columns = grid.getColumns();
+
+        // (cell, partner) pairs, packed into longs so that sorting groups them by cell
+        int[] above = clusterRow > 0 ? bottomTransitions[k - clusterColumns] : new int[0];
+        int[] before = clusterCol > 0 ? rightTransitions[k - 1] : new int[0];
+        long[] pairs = new long[above.length + bottomTransitions[k].length + before.length + rightTransitions[k].length];
+        int count = 0;
+        for (int col : above) {
+            pairs[count++] = pair(grid.index(top, left + col), grid.index(top, left + col) - columns);
+        }
+        for (int col : bottomTransitions[k]) {
+            pairs[count++] = pair(grid.index(bottom, left + col), grid.index(bottom, left + col) + columns);
+        }
+        for (int row : before) {
+            pairs[count++] = pair(grid.index(top + row, left), grid.index(top + row, left) - 1);
+        }
+        for (int row : rightTransitions[k]) {
+            pairs[count++] = pair(grid.index(top + row, right), grid.index(top + row, right) + 1);
+        }
+        Arrays.sort(pairs);
+
+        int[] cells = new int[count];
+        int[][] cellPartners = new int[count][];
+        int n = 0;
+        for (int i = 0; i < count; ) {
+            int cell = (int) (pairs[i] >>> 32);
+            int j = i;
+            while (j < count && (int) (pairs[j] >>> 32) == cell) {
+                j++;
+            }
+            cells[n] = cell;
+            cellPartners[n] = new int[j - i];
+            for (int p = i; p < j; p++) {
+                cellPartners[n][p - i] = (int) pairs[p];
+            }
+            n++;
+            i = j;
+        }
+        cells = Arrays.copyOf(cells, n);
+
+        int[] distances = new int[n * n];
+        ClusterSearch search = searches.get();
+        for (int i = 0; i < n; i++) {
+            search.run(grid, top, left, bottom, right, cells[i]);
+            for (int j = 0; j < n; j++) {
+                distances[i * n + j] = search.distance(cells[j]);
+            }
+        }
+        nodeCells[k] = cells;
+        partners[k] = Arrays.copyOf(cellPartners, n);
+        intraDistances[k] = distances;
+    }
+
+    private static long pair(int cell, int partner) {
+        return ((long) cell << 32) | partner;
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath(grid.getStartCell(), grid.getGoalCell());
+        PathWriter.print("output using HPA*: ", grid, path, "No path exists");
+    }
+
+    /**
+     * Searches the abstract graph for a path between two cells and refines it into cells.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            return null;
+        }
+        if (startCell == goalCell) {
+            return new int[]{startCell};
+        }
+        int startCluster = clusterOf(startCell);
+        int goalCluster = clusterOf(goalCell);
+        ClusterSearch search = searches.get();
+
+        // Temporary edges joining the start and goal to the abstract nodes of their clusters
+        Map<Integer, Integer> startEdges = clusterEdges(search, startCluster, startCell);
+        Map<Integer, Integer> goalEdges = clusterEdges(search, goalCluster, goalCell);
+        if (startCluster == goalCluster) {
+            // The last run started from the goal, so it also holds the distance to the start
+            int direct = search.distance(startCell);
+            if (direct >= 0) {
+                startEdges.put(goalCell, direct);
+            }
+        }
+
+        Map<Integer, Integer> g = new HashMap<>();
+        Map<Integer, Integer> parent = new HashMap<>();
+        Set<Integer> closed = new HashSet<>();
+        PriorityQueue<Long> open = new PriorityQueue<>();
+        g.put(startCell, 0);
+        open.add(key(grid.manhattan(startCell, goalCell), startCell));
+        while (!open.isEmpty()) {
+            int cell = (int) (open.poll() & 0xFFFFFFFFL);
+            if (!closed.add(cell)) {
+                continue;
+            }
+            if (cell == goalCell) {
+                return refine(abstractPath(parent, startCell, goalCell), search);
+            }
+            int cellG = g.get(cell);
+            if (cell == startCell) {
+                for (Map.Entry<Integer, Integer> edge : startEdges.entrySet()) {
+                    if (edge.getValue() >= 0) {
+                        relax(g, parent, open, cell, edge.getKey(), cellG + edge.getValue(), goalCell);
+                    }
+                }
+            }
+            int k = clusterOf(cell);
+            int i = Arrays.binarySearch(nodeCells[k], cell);
+            if (i >= 0) {
+                int n = nodeCells[k].length;
+                for (int j = 0; j < n; j++) {
+                    int distance = intraDistances[k][i * n + j];
+                    if (j != i && distance >= 0) {
+                        relax(g, parent, open, cell, nodeCells[k][j], cellG + distance, goalCell);
+                    }
+                }
+                for (int partner : partners[k][i]) {
+                    relax(g, parent, open, cell, partner, cellG + 1, goalCell);
+                }
+            }
+            Integer toGoal = goalEdges.get(cell);
+            if (toGoal != null && toGoal >= 0) {
+                relax(g, parent, open, cell, goalCell, cellG + toGoal, goalCell);
+            }
+        }
+        return null;
+    }
+
+    private static long key(int f, int cell) {
+        return ((long) f << 32) | cell;
+    }
+
+    private void relax(Map<Integer, Integer> g, Map<Integer, Integer> parent, PriorityQueue<Long> open,
+                       int from, int to, int newG, int goalCell) {
+        Integer oldG = g.get(to);
+        if (oldG == null || newG < oldG) {
+            g.put(to, newG);
+            parent.put(to, from);
+            open.add(key(newG + grid.manhattan(to, goalCell), to));
+        }
+    }
+
+    /**
+     * Returns the distances from a cell to every other abstract node of its cluster,
+     * or -1 where a node cannot be reached inside the cluster.
+     */
+    private Map<Integer, Integer> clusterEdges(ClusterSearch search, int k, int cell) {
+        runInCluster(search, k, cell);
+        Map<Integer, Integer> edges = new HashMap<>();
+        for (int node : nodeCells[k]) {
+            if (node != cell) {
+                edges.put(node, search.distance(node));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Runs the search from a cell, confined to cluster k. Distances are then looked up through the search.
+     */
+    private void runInCluster(ClusterSearch search, int k, int cell) {
+        int top = (k / clusterColumns) * clusterSize;
+        int left = (k % clusterColumns) * clusterSize;
+        int bottom = Math.min(top + clusterSize, grid.getRows()) - 1;
+        int right = Math.min(left + clusterSize, grid.getColumns()) - 1;
+        search.run(grid, top, left, bottom, right, cell);
+    }
+
+    private static int[] abstractPath(Map<Integer, Integer> parent, int startCell, int goalCell) {
+        int length = 1;
+        for (int cell = goalCell; cell != startCell; cell = parent.get(cell)) {
+            length++;
+        }
+        int[] path = new int[length];
+        int cell = goalCell;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = cell;
+            cell = i > 0 ? parent.get(cell) : cell;
+        }
+        return path;
+    }
+
+    /**
+     * Turns an abstract path into cells. Consecutive nodes in different clusters are adjacent across a border;
+     * nodes in the same cluster are joined by a search confined to that cluster.
+     */
+    private int[] refine(int[] abstractPath, ClusterSearch search) {
+        int[] path = new int[16];
+        int length = 0;
+        path[length++] = abstractPath[0];
+        for (int i = 1; i < abstractPath.length; i++) {
+            int from = abstractPath[i - 1];
+            int to = abstractPath[i];
+            int k = clusterOf(from);
+            if (k != clusterOf(to)) {
+                path = ensure(path, length + 1);
+                path[length++] = to;
+                continue;
+            }
+            runInCluster(search, k, from);
+            int segment = search.distance(to);
+            path = ensure(path, length + segment);
+            search.writePath(to, path, length + segment - 1);
+            length += segment;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    private static int[] ensure(int[] path, int size) {
+        return size <= path.length ? path : Arrays.copyOf(path, Math.max(size, path.length * 2));
+    }
+
+    /**
+     * Breadth-first search confined to one cluster, with buffers sized for a cluster and reused between runs.
+     */
+    private static final class ClusterSearch {
+        private final int size;        // Side of a cluster
+        private final int[] distance;  // Distance from the source, by local index
+        private final int[] parent;    // Previous cell on a shortest path from the source, by local index
+        private final int[] stamp;     // Run in which the local entry was written
+        private final int[] queue;
+        private int run;
+        private MazeGrid grid;
+        private int top, left, bottom, right;
+
+        ClusterSearch(int size) {
+            this.size = size;
+            distance = new int[size * size];
+            parent = new int[size * size];
+            stamp = new int[size * size];
+            queue = new int[size * size];
+        }
+
+        private int local(int cell) {
+            return (grid.row(cell) - top) * size + grid.col(cell) - left;
+        }
+
+        private boolean inside(int cell) {
+            int row = grid.row(cell);
+            int col = grid.col(cell);
+            return row >= top && row <= bottom && col >= left && col <= right;
+        }
+
+        void run(MazeGrid grid, int top, int left, int bottom, int right, int source) {
+            this.grid = grid;
+            this.top = top;
+            this.left = left;
+            this.bottom = bottom;
+            this.right = right;
+            if (++run == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                run = 1;
+            }
+            int head = 0;
+            int tail = 0;
+            int s = local(source);
+            stamp[s] = run;
+            distance[s] = 0;
+            parent[s] = -1;
+            queue[tail++] = source;
+            while (head < tail) {
+                int cell = queue[head++];
+                int d = distance[local(cell)] + 1;
+                int mask = grid.getNeighborMask(cell);
+                for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                    if ((mask & (1 << direction)) == 0) {
+                        continue;
+                    }
+                    int next = grid.neighbor(cell, direction);
+                    if (!inside(next)) {
+                        continue;
+                    }
+                    int l = local(next);
+                    if (stamp[l] != run) {
+                        stamp[l] = run;
+                        distance[l] = d;
+                        parent[l] = cell;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the distance from the source of the last run, or -1 if the cell was not reached.
+         */
+        int distance(int cell) {
+            if (!inside(cell)) {
+                return -1;
+            }
+            int l = local(cell);
+            return stamp[l] == run ? distance[l] : -1;
+        }
+
+        /**
+         * Writes the path from the source (exclusive) to a reached cell (inclusive) into out, ending at index last.
+         */
+        void writePath(int cell, int[] out, int last) {
+            for (int c = cell; parent[local(c)] >= 0; c = parent[local(c)]) {
+                out[last--] = c;
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * IndexedMinHeap is a binary min-heap of cell indices keyed by (f, g).
+ * The cell with the lowest f comes out first, and among equal f the one with the lowest g.
+ * Every cell remembers its position in the heap, so membership tests are O(1) and
+ * decrease-key is O(log n) without searching the heap.
+ */
+public class IndexedMinHeap {
+    private final int[] heap;     // Cell indices in heap order
+    private final int[] position; // Position of each cell in the heap, or -1 if absent
+    private final int[] fKey;     // f value of each cell in the heap
+    private final int[] gKey;     // g value of each cell in the heap
+    private int size;             // Number of cells in the heap
+
+    /**
+     * Constructor for IndexedMinHeap class.
+     *
+     * @param capacity Number of distinct cell indices the heap can hold (cells are 0 to capacity - 1).
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        fKey = new int[capacity];
+        gKey = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int cell) {
+        return position[cell] >= 0;
+    }
+
+    /**
+     * Adds a cell to the heap.
+     *
+     * @param cell The index of the cell.
+     * @param f    Total cost of the cell.
+     * @param g    Cost from the start to the cell.
+     */
+    public void insert(int cell, int f, int g) {
+        fKey[cell] = f;
+        gKey[cell] = g;
+        heap[size] = cell;
+        position[cell] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the keys of a cell already in the heap.
+     *
+     * @param cell The index of the cell.
+     * @param f    New total cost of the cell, not greater than the current one.
+     * @param g    New cost from the start to the cell.
+     */
+    public void decreaseKey(int cell, int f, int g) {
+        fKey[cell] = f;
+        gKey[cell] = g;
+        siftUp(position[cell]);
+    }
+
+    /**
+     * Changes the keys of a cell already in the heap, in either direction.
+     *
+     * @param cell The index of the cell.
+     * @param f    New total cost of the cell.
+     * @param g    New cost from the start to the cell.
+     */
+    public void updateKey(int cell, int f, int g) {
+        boolean lower = f < fKey[cell] || (f == fKey[cell] && g < gKey[cell]);
+        fKey[cell] = f;
+        gKey[cell] = g;
+        if (lower) {
+            siftUp(position[cell]);
+        } else {
+            siftDown(position[cell]);
+        }
+    }
+
+    /**
+     * Removes a cell from the heap if it is in it.
+     */
+    public void remove(int cell) {
+        int index = position[cell];
+        if (index < 0) {
+            return;
+        }
+        position[cell] = -1;
+        size--;
+        if (index < size) {
+            int last = heap[size];
+            heap[index] = last;
+            position[last] = index;
+            siftDown(index);
+            siftUp(position[last]);
+        }
+    }
+
+    /**
+     * Returns the cell that {@link #poll()} would remove next, without removing it.
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Returns the f of the cell that {@link #poll()} would remove next, without removing it.
+     */
+    public int peekF() {
+        return fKey[heap[0]];
+    }
+
+    /**
+     * Returns the g of the cell that {@link #poll()} would remove next, without removing it.
+     */
+    public int peekG() {
+        return gKey[heap[0]];
+    }
+
+    /**
+     * Removes and returns the cell with the lowest (f, g).
+     *
+     * @return The index of the removed cell.
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes every cell from the heap.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private boolean less(int a, int b) {
+        return fKey[a] < fKey[b] || (fKey[a] == fKey[b] && gKey[a] < gKey[b]);
+    }
+
+    private void siftUp(int index) {
+        int cell = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!less(cell, heap[parent])) {
+                break;
+            }
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = cell;
+        position[cell] = index;
+    }
+
+    private void siftDown(int index) {
+        int cell = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], cell)) {
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = cell;
+        position[cell] = index;
+    }
+}
@@ -0,0 +1,581 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * IslandColonies runs several ant colonies on one query, each with its own pheromone store and parameter set, and
+ * lets them share what they learn. One colony with the default weights converges early onto whatever its first
+ * lucky ants found; colonies that weigh pheromone and the heuristic differently converge onto different paths.
+ *
+ * The colonies (islands) run side by side for a number of iterations, the migration interval. Then every island
+ * is handed the shortest path any island has found, and blends the pheromone of the island before it in a ring
+ * into its own, a little each time, so good trails spread without making all islands alike at once. This repeats
+ * until every island has run out of iterations, time or improvement.
+ *
+ * Islands run on threads of this process, or each in a JVM of its own started with the same class path, which
+ * then exchange paths and pheromone over their standard input and output.
+ */
+public class IslandColonies {
+    public static final int DEFAULT_MIGRATION_INTERVAL = 5;
+    public static final double DEFAULT_BLEND_WEIGHT = 0.2;
+    // Weights and evaporation rates the islands cycle through; the first is ACOMazeSolver's own default
+    private static final double[][] DEFAULT_SETTINGS = {
+            {0.1, 0.1, 0.5},
+            {1, 2, 0.3},
+            {1, 5, 0.5},
+            {2, 1, 0.1},
+            {0.5, 3, 0.2},
+            {1, 1, 0.7},
+    };
+    // Commands sent to an island in another process
+    private static final int BEGIN = 1;
+    private static final int RUN = 2;
+    private static final int MIGRATE = 3;
+    private static final int QUIT = 4;
+
+    private final MazeGrid grid;
+    private final List<Settings> settings;
+    private final boolean processes;    // Whether the islands run in processes of their own
+    private int migrationInterval = DEFAULT_MIGRATION_INTERVAL;
+    private double blendWeight = DEFAULT_BLEND_WEIGHT;
+    private int maxIterations = 10;     // Iterations per island
+    private long timeBudgetMillis = 0;  // Wall-clock time per query, or 0 for no limit
+    private Island[] islands;           // Started on the first query
+    private ExecutorService threads;    // Runs the islands, or waits for them when they are processes
+    private int migrations;             // Migrations during the last query
+    private int[] islandBestLengths;    // Steps of each island's best path after the last query, -1 for none
+
+    /**
+     * Parameter set of one island.
+     */
+    public static final class Settings {
+        private final double alpha;
+        private final double beta;
+        private final double evaporationRate;
+        private final int ants;
+        private final long seed;
+
+        /**
+         * Constructor for Settings class.
+         *
+         * @param alpha           Weight of pheromone, see {@link ACOMazeSolver#setWeights}.
+         * @param beta            Weight of closeness to the goal.
+         * @param evaporationRate Fraction of pheromone that evaporates every iteration.
+         * @param ants            Number of ants per iteration.
+         * @param seed            Seed of the island's random number generators.
+         */
+        public Settings(double alpha, double beta, double evaporationRate, int ants, long seed) {
+            this.alpha = alpha;
+            this.beta = beta;
+            this.evaporationRate = evaporationRate;
+            this.ants = ants;
+            this.seed = seed;
+        }
+
+        /**
+         * Returns varied settings for a number of islands: the weights and evaporation rates cycle through a fixed
+         * list, and every island gets its own seed.
+         */
+        public static List<Settings> defaults(int islands, int ants, long seed) {
+            List<Settings> list = new ArrayList<>(islands);
+            for (int i = 0; i < islands; i++) {
+                double[] values = DEFAULT_SETTINGS[i % DEFAULT_SETTINGS.length];
+                list.add(new Settings(values[0], values[1], values[2], ants, seed + i));
+            }
+            return list;
+        }
+
+        @Override
+        public String toString() {
+            return "alpha " + alpha + ", beta " + beta + ", evaporation " + evaporationRate + ", " + ants + " ants";
+        }
+    }
+
+    /**
+     * One colony, in this process or another.
+     */
+    private interface Island extends Closeable {
+        /**
+         * Starts a query, see {@link ACOMazeSolver#beginQuery}.
+         */
+        boolean begin(int startCell, int goalCell) throws IOException;
+
+        /**
+         * Runs up to count iterations and returns how many ran, see {@link ACOMazeSolver#runIterations}.
+         * The best path and the pheromone levels are then available from the getters.
+         */
+        int run(int count) throws IOException;
+
+        int[] getBestPath();
+
+        double[] getLevels();
+
+        /**
+         * Hands the island a path found elsewhere and pheromone levels to blend into its own.
+         */
+        void migrate(int[] path, double[] levels, double weight) throws IOException;
+    }
+
+    /**
+     * An island on a thread of this process.
+     */
+    private static final class LocalIsland implements Island {
+        private final ACOMazeSolver solver;
+        private double[] levels;
+
+        LocalIsland(MazeGrid grid, Settings settings, int maxIterations, long timeBudgetMillis) {
+            solver = new ACOMazeSolver(grid);
+            solver.setWeights(settings.alpha, settings.beta);
+            solver.setEvaporationRate(settings.evaporationRate);
+            solver.setNumAnts(settings.ants);
+            solver.setSeed(settings.seed);
+            solver.setMaxIterations(maxIterations);
+            solver.setTimeBudget(timeBudgetMillis);
+        }
+
+        @Override
+        public boolean begin(int startCell, int goalCell) {
+            return solver.beginQuery(startCell, goalCell);
+        }
+
+        @Override
+        public int run(int count) {
+            int ran = solver.runIterations(count);
+            levels = solver.getPheromoneStore().copyLevels(levels);
+            return ran;
+        }
+
+        @Override
+        public int[] getBestPath() {
+            return solver.getBestPath();
+        }
+
+        @Override
+        public double[] getLevels() {
+            return levels;
+        }
+
+        @Override
+        public void migrate(int[] path, double[] levels, double weight) {
+            solver.getPheromoneStore().blend(levels, weight);
+            solver.acceptPath(path);
+        }
+
+        @Override
+        public void close() {
+            solver.shutdown();
+        }
+    }
+
+    /**
+     * An island in a JVM of its own, started with the same class path as this one and driven over its standard
+     * input and output. The maze and the settings are sent once, when the process starts.
+     */
+    private static final class ProcessIsland implements Island {
+        private final Process process;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private int[] bestPath;
+        private double[] levels;
+
+        ProcessIsland(MazeGrid grid, Settings settings, int maxIterations, long timeBudgetMillis) throws IOException {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    IslandColonies.class.getName(), "--island")
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            out.writeInt(grid.getRows());
+            out.writeInt(grid.getColumns());
+            for (int cell = 0; cell < grid.getCellCount(); cell++) {
+                out.writeByte(grid.getType(cell));
+            }
+            out.writeDouble(settings.alpha);
+            out.writeDouble(settings.beta);
+            out.writeDouble(settings.evaporationRate);
+            out.writeInt(settings.ants);
+            out.writeLong(settings.seed);
+            out.writeInt(maxIterations);
+            out.writeLong(timeBudgetMillis);
+            out.flush();
+        }
+
+        @Override
+        public boolean begin(int startCell, int goalCell) throws IOException {
+            out.writeByte(BEGIN);
+            out.writeInt(startCell);
+            out.writeInt(goalCell);
+            out.flush();
+            return in.readBoolean();
+        }
+
+        @Override
+        public int run(int count) throws IOException {
+            out.writeByte(RUN);
+            out.writeInt(count);
+            out.flush();
+            int ran = in.readInt();
+            bestPath = readPath(in);
+            levels = readLevels(in, levels);
+            return ran;
+        }
+
+        @Override
+        public int[] getBestPath() {
+            return bestPath;
+        }
+
+        @Override
+        public double[] getLevels() {
+            return levels;
+        }
+
+        @Override
+        public void migrate(int[] path, double[] levels, double weight) throws IOException {
+            out.writeByte(MIGRATE);
+            writePath(out, path);
+            writeLevels(out, levels);
+            out.writeDouble(weight);
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.writeByte(QUIT);
+                out.flush();
+            } catch (IOException e) {
+                // The process has gone already
+            }
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Constructor for IslandColonies class.
+     *
+     * @param grid      The maze.
+     * @param settings  Parameter set of each island; one island per entry.
+     * @param processes True to run each island in a JVM of its own, false to run them on threads of this one.
+     */
+    public IslandColonies(MazeGrid grid, List<Settings> settings, boolean processes) {
+        if (settings.isEmpty()) {
+            throw new IllegalArgumentException("at least one island is needed");
+        }
+        this.grid = grid;
+        this.settings = new ArrayList<>(settings);
+        this.processes = processes;
+    }
+
+    /**
+     * Sets the number of iterations the islands run between migrations.
+     */
+    public void setMigrationInterval(int migrationInterval) {
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("migration interval must be at least 1: " + migrationInterval);
+        }
+        this.migrationInterval = migrationInterval;
+    }
+
+    /**
+     * Sets how much of its neighbour's pheromone an island blends into its own at every migration, between 0 and 1.
+     */
+    public void setBlendWeight(double blendWeight) {
+        if (blendWeight < 0 || blendWeight > 1) {
+            throw new IllegalArgumentException("blend weight must be between 0 and 1: " + blendWeight);
+        }
+        this.blendWeight = blendWeight;
+    }
+
+    /**
+     * Sets the number of iterations each island runs per query. Takes effect when the islands start, on the first
+     * query.
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Limits the wall-clock time of each island's share of a query, see {@link ACOMazeSolver#setTimeBudget}. Takes
+     * effect when the islands start, on the first query.
+     */
+    public void setTimeBudget(long millis) {
+        this.timeBudgetMillis = millis;
+    }
+
+    /**
+     * Returns the number of migrations during the last query.
+     */
+    public int getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * Returns the number of steps of each island's best path after the last query, or -1 where an island found none.
+     * Islands are handed the overall best path at every migration, so they only differ by what they found after
+     * the last one.
+     */
+    public int[] getIslandBestLengths() {
+        return islandBestLengths.clone();
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath(grid.getStartCell(), grid.getGoalCell());
+        PathWriter.print("Output using " + settings.size() + " ACO islands: ", grid, path, "No path exists.");
+    }
+
+    /**
+     * Runs the islands on a query, migrating between them every migration interval.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The shortest path any island found, or null if none did.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        start();
+        int count = islands.length;
+        migrations = 0;
+        islandBestLengths = new int[count];
+        List<Callable<Integer>> begins = new ArrayList<>(count);
+        for (Island island : islands) {
+            begins.add(() -> island.begin(startCell, goalCell) ? 1 : 0);
+        }
+        int[] begun = invokeAll(begins);
+        if (begun[0] == 0) {
+            // Every island decides this the same way: there is no path
+            Arrays.fill(islandBestLengths, -1);
+            return null;
+        }
+
+        boolean[] running = new boolean[count];
+        Arrays.fill(running, maxIterations > 0);
+        int[] done = new int[count];    // Iterations each island has run
+        int[] asked = new int[count];   // Iterations each island was asked for in this round
+        int[] best = null;
+        while (true) {
+            List<Callable<Integer>> runs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Island island = islands[i];
+                int iterations = running[i] ? Math.min(migrationInterval, maxIterations - done[i]) : 0;
+                asked[i] = iterations;
+                runs.add(iterations > 0 ? () -> island.run(iterations) : () -> 0);
+            }
+            int[] ran = invokeAll(runs);
+            boolean anyRunning = false;
+            for (int i = 0; i < count; i++) {
+                if (running[i]) {
+                    done[i] += ran[i];
+                    // An island that ran fewer than asked has stopped early, on stagnation or its time budget
+                    running[i] = ran[i] == asked[i] && done[i] < maxIterations;
+                    anyRunning |= running[i];
+                }
+                int[] path = islands[i].getBestPath();
+                islandBestLengths[i] = path == null ? -1 : path.length - 1;
+                if (path != null && (best == null || path.length < best.length)) {
+                    best = path;
+                }
+            }
+            if (!anyRunning) {
+                return best == null ? null : best.clone();
+            }
+            migrate(best, running);
+        }
+    }
+
+    /**
+     * Stops the islands' threads and processes. The next query starts them again.
+     */
+    public void shutdown() {
+        if (islands != null) {
+            for (Island island : islands) {
+                try {
+                    island.close();
+                } catch (IOException e) {
+                    // Closing an island only releases it
+                }
+            }
+            islands = null;
+        }
+        if (threads != null) {
+            threads.shutdown();
+            threads = null;
+        }
+    }
+
+    /**
+     * Hands the best path to every island still running, and blends into each the levels of the island before it.
+     * The levels were all copied after the last run, so the order the islands are visited in does not matter.
+     */
+    private void migrate(int[] best, boolean[] running) {
+        List<Callable<Integer>> moves = new ArrayList<>(islands.length);
+        for (int i = 0; i < islands.length; i++) {
+            if (running[i]) {
+                Island island = islands[i];
+                double[] neighbour = islands[(i + islands.length - 1) % islands.length].getLevels();
+                moves.add(() -> {
+                    island.migrate(best, neighbour, blendWeight);
+                    return 0;
+                });
+            }
+        }
+        invokeAll(moves);
+        migrations++;
+    }
+
+    private void start() {
+        if (islands != null) {
+            return;
+        }
+        threads = Executors.newFixedThreadPool(settings.size(), task -> {
+            Thread thread = new Thread(task, "aco-island");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Island[] started = new Island[settings.size()];
+        try {
+            for (int i = 0; i < started.length; i++) {
+                started[i] = processes
+                        ? new ProcessIsland(grid, settings.get(i), maxIterations, timeBudgetMillis)
+                        : new LocalIsland(grid, settings.get(i), maxIterations, timeBudgetMillis);
+            }
+        } catch (IOException e) {
+            islands = started;
+            shutdown();
+            throw new UncheckedIOException("cannot start an island process", e);
+        }
+        islands = started;
+    }
+
+    private int[] invokeAll(List<Callable<Integer>> tasks) {
+        try {
+            List<Future<Integer>> futures = threads.invokeAll(tasks);
+            int[] results = new int[futures.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = futures.get(i).get();
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            // An island that failed half way through a command cannot be trusted any more
+            shutdown();
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException("lost an island process", (IOException) e.getCause());
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void writePath(DataOutputStream out, int[] path) throws IOException {
+        out.writeInt(path == null ? -1 : path.length);
+        if (path != null) {
+            for (int cell : path) {
+                out.writeInt(cell);
+            }
+        }
+    }
+
+    private static int[] readPath(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        int[] path = new int[length];
+        for (int i = 0; i < length; i++) {
+            path[i] = in.readInt();
+        }
+        return path;
+    }
+
+    private static void writeLevels(DataOutputStream out, double[] levels) throws IOException {
+        out.writeInt(levels.length);
+        for (double level : levels) {
+            out.writeDouble(level);
+        }
+    }
+
+    private static double[] readLevels(DataInputStream in, double[] reuse) throws IOException {
+        int count = in.readInt();
+        double[] levels = reuse != null && reuse.length == count ? reuse : new double[count];
+        for (int i = 0; i < count; i++) {
+            levels[i] = in.readDouble();
+        }
+        return levels;
+    }
+
+    /**
+     * Runs one island for a parent process, when started with --island: reads the maze and settings from standard
+     * input, then answers commands until told to quit.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 || !args[0].equals("--island")) {
+            System.out.println("IslandColonies runs its island processes itself; use java Main <maze-file> islands");
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        // Standard output carries the replies; anything printed goes to the error stream instead
+        System.setOut(System.err);
+        int rows = in.readInt();
+        int columns = in.readInt();
+        byte[] types = new byte[rows * columns];
+        in.readFully(types);
+        Settings settings = new Settings(in.readDouble(), in.readDouble(), in.readDouble(), in.readInt(), in.readLong());
+        int maxIterations = in.readInt();
+        long timeBudgetMillis = in.readLong();
+        LocalIsland island = new LocalIsland(new MazeGrid(rows, columns, types), settings, maxIterations,
+                timeBudgetMillis);
+        double[] incoming = null;   // Levels of the neighbouring island, reused between migrations
+        while (true) {
+            int command = in.read();
+            if (command < 0 || command == QUIT) {
+                break;
+            }
+            switch (command) {
+                case BEGIN:
+                    out.writeBoolean(island.begin(in.readInt(), in.readInt()));
+                    break;
+                case RUN:
+                    out.writeInt(island.run(in.readInt()));
+                    writePath(out, island.getBestPath());
+                    writeLevels(out, island.getLevels());
+                    break;
+                case MIGRATE:
+                    int[] path = readPath(in);
+                    incoming = readLevels(in, incoming);
+                    island.migrate(path, incoming, in.readDouble());
+                    break;
+                default:
+                    throw new IOException("unknown island command " + command);
+            }
+            out.flush();
+        }
+        island.close();
+    }
+}
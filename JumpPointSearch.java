@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * JumpPointSearch finds shortest paths on the 4-connected maze like AstarAlgorithm, but instead of expanding every
+ * neighbour it jumps along straight lines and only adds the cells where the path may need to turn (jump points)
+ * to the open list. On open areas this skips the many symmetric equal-length paths A* would expand.
+ * Paths are returned cell by cell, in the same form as AstarAlgorithm.findPath.
+ */
+public class JumpPointSearch {
+    // Search state of a cell
+    private static final byte UNSEEN = 0;
+    private static final byte OPEN = 1;
+    private static final byte CHECKED = 2;
+
+    private final MazeGrid grid;
+    private final int rows;
+    private final int columns;
+    private int startCell, goalCell;
+    // Per-search state, indexed by cell and valid only where stamp equals the current generation
+    private final int[] g;       // Cost from start cell to the jump point
+    private final int[] parent;  // Jump point the search reached the cell from
+    private final byte[] state;  // UNSEEN, OPEN or CHECKED
+    private final int[] stamp;
+    private int generation;
+    private final IndexedMinHeap openHeap;
+    private int expanded;        // Jump points expanded by the last search
+
+    public JumpPointSearch(int rows, int cols, int[][] maze) {
+        this(MazeGrid.fromArray(rows, cols, maze));
+    }
+
+    public JumpPointSearch(MazeGrid grid) {
+        this.grid = grid;
+        rows = grid.getRows();
+        columns = grid.getColumns();
+        int cells = grid.getCellCount();
+        g = new int[cells];
+        parent = new int[cells];
+        state = new byte[cells];
+        stamp = new int[cells];
+        openHeap = new IndexedMinHeap(cells);
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        int[] path = findPath(grid.getStartCell(), grid.getGoalCell());
+        PathWriter.print("output using JPS: ", grid, path, "No path exists");
+    }
+
+    /**
+     * Returns the number of jump points the last search expanded.
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * Searches for a shortest path between two cells.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public int[] findPath(int startCell, int goalCell) {
+        if (startCell < 0 || goalCell < 0 || grid.isWall(startCell) || grid.isWall(goalCell)) {
+            return null;
+        }
+        this.startCell = startCell;
+        this.goalCell = goalCell;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        openHeap.clear();
+        expanded = 0;
+
+        g[startCell] = 0;
+        parent[startCell] = -1;
+        setState(startCell, OPEN);
+        openHeap.insert(startCell, grid.manhattan(startCell, goalCell), 0);
+        while (!openHeap.isEmpty()) {
+            int cell = openHeap.poll();
+            if (cell == goalCell) {
+                return backtrack();
+            }
+            setState(cell, CHECKED);
+            expanded++;
+            expand(cell);
+        }
+        return null;
+    }
+
+    /**
+     * Jumps from a jump point in every direction its parent leaves open and adds the jump points found.
+     * A horizontal move may continue straight or turn up or down; a vertical move may continue straight or turn
+     * left or right. The start cell has no parent and looks in all four directions.
+     */
+    private void expand(int cell) {
+        int row = grid.row(cell);
+        int col = grid.col(cell);
+        int from = parent[cell];
+        if (from < 0) {
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                jumpFrom(cell, row, col, direction);
+            }
+            return;
+        }
+        int direction = grid.row(from) == row
+                ? (grid.col(from) < col ? MazeGrid.RIGHT : MazeGrid.LEFT)
+                : (grid.row(from) < row ? MazeGrid.DOWN : MazeGrid.UP);
+        jumpFrom(cell, row, col, direction);
+        if (direction == MazeGrid.LEFT || direction == MazeGrid.RIGHT) {
+            jumpFrom(cell, row, col, MazeGrid.UP);
+            jumpFrom(cell, row, col, MazeGrid.DOWN);
+        } else {
+            jumpFrom(cell, row, col, MazeGrid.LEFT);
+            jumpFrom(cell, row, col, MazeGrid.RIGHT);
+        }
+    }
+
+    private void jumpFrom(int cell, int row, int col, int direction) {
+        if (!grid.hasNeighbor(cell, direction)) {
+            return;
+        }
+        int jumpPoint;
+        switch (direction) {
+            case MazeGrid.UP:
+                jumpPoint = jumpVertical(row, col, -1);
+                break;
+            case MazeGrid.DOWN:
+                jumpPoint = jumpVertical(row, col, 1);
+                break;
+            case MazeGrid.LEFT:
+                jumpPoint = jumpHorizontal(row, col, -1);
+                break;
+            default:
+                jumpPoint = jumpHorizontal(row, col, 1);
+                break;
+        }
+        if (jumpPoint >= 0) {
+            openJumpPoint(cell, jumpPoint);
+        }
+    }
+
+    private void openJumpPoint(int from, int cell) {
+        byte cellState = stateOf(cell);
+        if (cellState == CHECKED) {
+            return;
+        }
+        int newG = g[from] + grid.manhattan(from, cell);
+        if (cellState == UNSEEN) {
+            setState(cell, OPEN);
+            parent[cell] = from;
+            g[cell] = newG;
+            openHeap.insert(cell, newG + grid.manhattan(cell, goalCell), newG);
+        } else if (newG < g[cell]) {
+            parent[cell] = from;
+            g[cell] = newG;
+            openHeap.decreaseKey(cell, newG + grid.manhattan(cell, goalCell), newG);
+        }
+    }
+
+    /**
+     * Moves along a row from (row, col) until it hits a wall (no jump point), the goal, or a cell with a forced
+     * neighbour: an open cell above or below whose own predecessor along the row is blocked, so the only
+     * shortest way into it passes through this cell.
+     *
+     * @return The jump point, or -1 if there is none.
+     */
+    private int jumpHorizontal(int row, int col, int dc) {
+        while (true) {
+            col += dc;
+            if (!isOpen(row, col)) {
+                return -1;
+            }
+            int cell = grid.index(row, col);
+            if (cell == goalCell) {
+                return cell;
+            }
+            if ((isOpen(row - 1, col) && !isOpen(row - 1, col - dc))
+                    || (isOpen(row + 1, col) && !isOpen(row + 1, col - dc))) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * Moves along a column from (row, col) until it hits a wall, the goal, a cell with a forced neighbour,
+     * or a cell from which a horizontal jump finds a jump point.
+     *
+     * @return The jump point, or -1 if there is none.
+     */
+    private int jumpVertical(int row, int col, int dr) {
+        while (true) {
+            row += dr;
+            if (!isOpen(row, col)) {
+                return -1;
+            }
+            int cell = grid.index(row, col);
+            if (cell == goalCell) {
+                return cell;
+            }
+            if ((isOpen(row, col - 1) && !isOpen(row - dr, col - 1))
+                    || (isOpen(row, col + 1) && !isOpen(row - dr, col + 1))) {
+                return cell;
+            }
+            if (jumpHorizontal(row, col, 1) >= 0 || jumpHorizontal(row, col, -1) >= 0) {
+                return cell;
+            }
+        }
+    }
+
+    private boolean isOpen(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < columns && !grid.isWall(row * columns + col);
+    }
+
+    private byte stateOf(int cell) {
+        return stamp[cell] == generation ? state[cell] : UNSEEN;
+    }
+
+    private void setState(int cell, byte newState) {
+        stamp[cell] = generation;
+        state[cell] = newState;
+    }
+
+    /**
+     * Rebuilds the path from the jump points, filling in the straight segments between them.
+     */
+    private int[] backtrack() {
+        int[] path = new int[g[goalCell] + 1];
+        int index = path.length - 1;
+        for (int cell = goalCell; cell != startCell; cell = parent[cell]) {
+            int from = parent[cell];
+            int step = grid.row(from) == grid.row(cell) ? Integer.signum(cell - from) : Integer.signum(cell - from) * columns;
+            for (int c = cell; c != from; c -= step) {
+                path[index--] = c;
+            }
+        }
+        path[index] = startCell;
+        return path;
+    }
+}
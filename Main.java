@@ -1,6 +1,12 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class Main {
+    private static final int BATCH_CACHE_ENTRIES = 10_000; // Paths the batch command keeps for repeated queries
+    private static final int TILED_CACHE_TILES = 256;      // Tiles the tiled command keeps in memory by default
+
 //    public void readMaze() {
 //        Scanner scanner = new Scanner(System.in);
 //        System.out.print("Enter number of rows: ");
@@ -26,7 +32,24 @@ public class Main {
 //        initializePheromoneLevels();
 //    }
 
-    public static void main(String[] args) {
+    /**
+     * With arguments, runs without prompting:
+     * java Main <maze-file> astar|aco|both|jps|hpa|bidir|bidir-threads
+     * java Main <maze-file> hda [threads]
+     * java Main <maze-file> bfs
+     * java Main <maze-file> islands [colonies] [threads|processes]
+     * java Main <maze-file> tile <tiled-file>
+     * java Main <tiled-file> tiled [max-tiles]
+     * java Main <maze-file> pack <packed-file>
+     * java Main <maze-file> path <algorithm> <out-file>   (- for the console)
+     * java Main <maze-file> batch <queries-file> [astar|aco|jps|hpa|bidir|bidir-threads|bfs] [threads]
+     * Without arguments, reads the maze from the console and asks what to run.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            runFromArguments(args);
+            return;
+        }
         int[][] maze;
         Scanner scanner = new Scanner(System.in);
 
@@ -43,39 +66,208 @@ public class Main {
                 maze[i][j] = scanner.nextInt();
             }
         }
+        MazeGrid grid = MazeGrid.fromArray(rows, cols, maze);
+        // The maze does not change between choices, so one index answers reachability for all of them
+        ConnectivityIndex connectivity = buildConnectivityIndex(grid);
         int choice;
-        long starttime, endtime;
         while (true) {
             System.out.print("to find path press 0 (A star algorithm is used) " + '\n' +
                     "or to find optimised path press  1 (ACO is used) " + '\n' +
-                    "or to find both together press 2 " + '\n' + " press 3 to exit: ");
+                    "or to find both together press 2 " + '\n' +
+                    "or to find path press 4 (Jump Point Search is used) " + '\n' + " press 3 to exit: ");
             choice = scanner.nextInt();
-            if (choice == 0) {
-                AstarAlgorithm as = new AstarAlgorithm(rows, cols, maze);
-                starttime = System.nanoTime();
-                as.search();
-                endtime = System.nanoTime();
-                System.out.println("time taken by A star= " + (endtime - starttime) + " nanoseconds");
-            } else if (choice == 1) {
-                ACOMazeSolver aco = new ACOMazeSolver(rows, cols, maze);
-                starttime = System.nanoTime();
-                aco.runACO();
-                endtime = System.nanoTime();
-                System.out.println("time taken by aco = " + (endtime - starttime) + " nanoseconds");
-            } else if (choice == 2) {
-                AstarAlgorithm as = new AstarAlgorithm(rows, cols, maze);
-                starttime = System.nanoTime();
-                as.search();
-                endtime = System.nanoTime();
-                System.out.println("time taken by A star= " + (endtime - starttime) + " nanoseconds");
-
-                ACOMazeSolver aco = new ACOMazeSolver(rows, cols, maze);
-                starttime = System.nanoTime();
-                aco.runACO();
-                endtime = System.nanoTime();
-                System.out.println("time taken by aco = " + (endtime - starttime) + " nanoseconds");
+            if (choice == 0 || choice == 1 || choice == 2 || choice == 4) {
+                solve(grid, connectivity, choice);
             } else if (choice == 3) break;
 
         }
     }
+
+    private static void runFromArguments(String[] args) throws IOException {
+        if (args.length > 1 && args[1].equals("tiled")) {
+            solveTiled(Paths.get(args[0]), args.length > 2 ? Integer.parseInt(args[2]) : TILED_CACHE_TILES);
+            return;
+        }
+        MazeGrid grid = MazeLoader.load(Paths.get(args[0]));
+        String command = args.length > 1 ? args[1] : "both";
+        if (command.equals("pack") && args.length > 2) {
+            MazeLoader.writePacked(grid, Paths.get(args[2]));
+        } else if (command.equals("tile") && args.length > 2) {
+            TiledMazeStore.write(grid, Paths.get(args[2]), TiledMazeStore.DEFAULT_TILE_SIZE);
+        } else if (command.equals("astar")) {
+            solve(grid, buildConnectivityIndex(grid), 0);
+        } else if (command.equals("aco")) {
+            solve(grid, buildConnectivityIndex(grid), 1);
+        } else if (command.equals("both")) {
+            solve(grid, buildConnectivityIndex(grid), 2);
+        } else if (command.equals("jps")) {
+            solve(grid, null, 4);
+        } else if (command.equals("hpa")) {
+            long starttime = System.nanoTime();
+            HierarchicalPathfinder hpa = new HierarchicalPathfinder(grid);
+            long endtime = System.nanoTime();
+            System.out.println("time taken to build HPA* graph = " + (endtime - starttime) + " nanoseconds");
+            starttime = System.nanoTime();
+            hpa.search();
+            endtime = System.nanoTime();
+            System.out.println("time taken by HPA* = " + (endtime - starttime) + " nanoseconds");
+        } else if (command.equals("bidir") || command.equals("bidir-threads")) {
+            BidirectionalAstar bidirectional = new BidirectionalAstar(grid);
+            bidirectional.setConcurrent(command.equals("bidir-threads"));
+            long starttime = System.nanoTime();
+            bidirectional.search();
+            long endtime = System.nanoTime();
+            bidirectional.shutdown();
+            System.out.println("time taken by bidirectional A star = " + (endtime - starttime) + " nanoseconds");
+        } else if (command.equals("bfs")) {
+            BitParallelBfs bfs = new BitParallelBfs(grid);
+            long starttime = System.nanoTime();
+            bfs.search();
+            long endtime = System.nanoTime();
+            System.out.println("time taken by bit-parallel BFS = " + (endtime - starttime) + " nanoseconds, "
+                    + bfs.getLayerCount() + " layers");
+        } else if (command.equals("islands")) {
+            int colonies = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            boolean processes = args.length > 3 && args[3].equals("processes");
+            IslandColonies islands = new IslandColonies(grid, IslandColonies.Settings.defaults(colonies, 20, 1), processes);
+            long starttime = System.nanoTime();
+            islands.search();
+            long endtime = System.nanoTime();
+            islands.shutdown();
+            System.out.println("time taken by " + colonies + " ACO islands in " + (processes ? "processes" : "threads")
+                    + " = " + (endtime - starttime) + " nanoseconds, " + islands.getMigrations() + " migrations");
+        } else if (command.equals("hda")) {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            HashDistributedAstar hda = new HashDistributedAstar(grid, threads);
+            long starttime = System.nanoTime();
+            hda.search();
+            long endtime = System.nanoTime();
+            hda.shutdown();
+            System.out.println("time taken by HDA* on " + threads + " threads = " + (endtime - starttime) + " nanoseconds, "
+                    + hda.getExpandedCount() + " cells expanded");
+        } else if (command.equals("path") && args.length > 3) {
+            writePath(new BatchSolver(grid), args[2], args[3]);
+        } else if (command.equals("batch") && args.length > 2) {
+            solveBatch(new BatchSolver(grid), Paths.get(args[2]), args.length > 3 ? args[3] : "astar",
+                    args.length > 4 ? Integer.parseInt(args[4]) : 1);
+        } else {
+            System.out.println("usage: java Main <maze-file> [astar|aco|both|jps|hpa|bidir|bidir-threads]");
+            System.out.println("       java Main <maze-file> hda [threads]");
+            System.out.println("       java Main <maze-file> bfs");
+            System.out.println("       java Main <maze-file> islands [colonies] [threads|processes]");
+            System.out.println("       java Main <maze-file> pack <packed-file>");
+            System.out.println("       java Main <maze-file> tile <tiled-file>");
+            System.out.println("       java Main <tiled-file> tiled [max-tiles]");
+            System.out.println("       java Main <maze-file> path <algorithm> <out-file>");
+            System.out.println("       java Main <maze-file> batch <queries-file> [astar|aco|jps|hpa|bidir|bidir-threads|bfs] [threads]");
+        }
+    }
+
+    /**
+     * Solves a tiled maze file between its start and goal with TiledAstar, keeping at most maxTiles tiles in memory.
+     */
+    private static void solveTiled(Path file, int maxTiles) throws IOException {
+        try (TiledMazeStore store = TiledMazeStore.open(file, maxTiles);
+             TiledAstar solver = new TiledAstar(store)) {
+            long starttime = System.nanoTime();
+            solver.search();
+            long endtime = System.nanoTime();
+            System.out.println("time taken by tiled A star = " + (endtime - starttime) + " nanoseconds, "
+                    + solver.getExpandedCount() + " cells expanded, " + store.getTileLoads() + " tile loads"
+                    + (solver.isSpilled() ? ", cell states moved off the heap" : ""));
+        }
+    }
+
+    /**
+     * Finds the path between the maze's start and goal and streams it to a file, or to the console if the
+     * file name is "-".
+     */
+    private static void writePath(BatchSolver solver, String algorithm, String outFile) throws IOException {
+        MazeGrid grid = solver.getGrid();
+        long starttime = System.nanoTime();
+        int[] path = solver.solve(grid.getStartCell(), grid.getGoalCell(), algorithm);
+        solver.shutdown();
+        long endtime = System.nanoTime();
+        try (PathWriter writer = outFile.equals("-") ? PathWriter.toConsole() : PathWriter.toFile(Paths.get(outFile))) {
+            if (path == null) {
+                writer.writeLine("No path exists");
+            } else {
+                writer.writePath("", grid, path);
+            }
+        }
+        System.out.println("time taken by " + algorithm + " = " + (endtime - starttime) + " nanoseconds, "
+                + (path == null ? "no path" : (path.length - 1) + " steps"));
+    }
+
+    /**
+     * Answers every query in the file and prints the path length of each, then the total time.
+     * Repeated queries are answered from a path cache. A* queries run on the given number of threads;
+     * the other solvers always run on one.
+     */
+    private static void solveBatch(BatchSolver solver, Path queriesFile, String algorithm, int threads) throws IOException {
+        int[][] queries = solver.readQueries(queriesFile);
+        MazeGrid grid = solver.getGrid();
+        PathCache cache = new PathCache(BATCH_CACHE_ENTRIES);
+        solver.setPathCache(cache);
+        long starttime = System.nanoTime();
+        int[][] paths = threads > 1 && algorithm.equals("astar")
+                ? solver.solveAllParallel(queries[0], queries[1], threads)
+                : solver.solveAll(queries[0], queries[1], algorithm);
+        long endtime = System.nanoTime();
+        solver.shutdown();
+        for (int i = 0; i < paths.length; i++) {
+            int start = queries[0][i];
+            int goal = queries[1][i];
+            System.out.println("(" + grid.row(start) + "," + grid.col(start) + ") -> (" + grid.row(goal) + "," + grid.col(goal) + "): "
+                    + (paths[i] == null ? "no path" : (paths[i].length - 1) + " steps"));
+        }
+        System.out.println("time taken by " + paths.length + " queries = " + (endtime - starttime) + " nanoseconds");
+        System.out.println("path cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+    }
+
+    /**
+     * Labels the components of the maze once, for every query on it, and prints the time that takes.
+     */
+    private static ConnectivityIndex buildConnectivityIndex(MazeGrid grid) {
+        long starttime = System.nanoTime();
+        ConnectivityIndex connectivity = new ConnectivityIndex(grid);
+        long endtime = System.nanoTime();
+        System.out.println("time taken to build connectivity index = " + (endtime - starttime) + " nanoseconds");
+        return connectivity;
+    }
+
+    /**
+     * Runs A* (choice 0), ACO (choice 1), both (choice 2) or Jump Point Search (choice 4) on the maze
+     * and prints the time each takes.
+     *
+     * @param connectivity Index of the maze's components, built once per maze, or null to search without one.
+     */
+    private static void solve(MazeGrid grid, ConnectivityIndex connectivity, int choice) {
+        long starttime, endtime;
+        if (choice == 0 || choice == 2) {
+            AstarAlgorithm as = new AstarAlgorithm(grid);
+            as.setConnectivityIndex(connectivity);
+            starttime = System.nanoTime();
+            as.search();
+            endtime = System.nanoTime();
+            System.out.println("time taken by A star= " + (endtime - starttime) + " nanoseconds");
+            System.out.println("A star metrics: " + as.getMetrics());
+        }
+        if (choice == 1 || choice == 2) {
+            ACOMazeSolver aco = new ACOMazeSolver(grid);
+            aco.setConnectivityIndex(connectivity);
+            starttime = System.nanoTime();
+            aco.runACO();
+            endtime = System.nanoTime();
+            System.out.println("time taken by aco = " + (endtime - starttime) + " nanoseconds");
+            System.out.println("aco metrics: " + aco.getMetrics());
+        }
+        if (choice == 4) {
+            JumpPointSearch jps = new JumpPointSearch(grid);
+            starttime = System.nanoTime();
+            jps.search();
+            endtime = System.nanoTime();
+            System.out.println("time taken by JPS = " + (endtime - starttime) + " nanoseconds");
+        }
+    }
 }
@@ -0,0 +1,453 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MazeBenchmark measures the solvers across maze sizes, wall densities and layouts. Each case gets warm-up
+ * iterations, then measured iterations of a fixed length; one operation is one findPath between the maze's start and
+ * goal, on a solver built before the warm-up and shut down after the last iteration. Throughput, average time and
+ * allocation per operation are printed and written as JSON, laid out like JMH's results with the sample standard
+ * deviation of the throughput as stdev.
+ *
+ * Each case runs in fresh JVMs, --forks of them one after another, and their measured iterations are pooled, so the
+ * JIT profile built up by one solver does not slow down the next. --forks 0 runs every case in this JVM.
+ *
+ * Layouts are MazeGenerator families, generated with the maze size as the seed. The hda algorithm is measured once
+ * for every thread count, reported as hda-1, hda-2 and so on, to show how it scales; allocation is only counted on
+ * the calling thread.
+ *
+ * java MazeBenchmark [--algorithms astar,aco,hda] [--sizes 32,128,512] [--densities 0.1,0.3]
+ *                    [--layouts open,random,corridor] [--threads 1,2,4] [--warmup 3] [--iterations 5]
+ *                    [--time-ms 1000] [--forks 1] [--out bench-results.json]
+ */
+public final class MazeBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private String[] algorithms = {"astar", "aco"};
+    private int[] sizes = {32, 128, 512};
+    private double[] densities = {0.1, 0.3};
+    private String[] layouts = {"open", "random", "corridor"};
+    private int[] threads = defaultThreads();   // Thread counts the hda algorithm is measured with
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationNanos = 1_000_000_000L;
+    private int forks = 1;
+    private String out = "bench-results.json";
+
+    /**
+     * Result of one benchmark case.
+     */
+    private static final class Result {
+        String algorithm;
+        String layout;
+        int size;
+        double density;
+        double[] opsPerSecond = {}; // Throughput of each measured iteration, over all forks
+        long ops;                   // Operations over all measured iterations
+        long nanos;                 // Time they took
+        long bytes;                 // Bytes they allocated
+
+        double nanosPerOp() {
+            return (double) nanos / ops;
+        }
+
+        double bytesPerOp() {
+            return (double) bytes / ops;
+        }
+
+        double allocMbPerSecond() {
+            return bytes / 1e6 / (nanos / 1e9);
+        }
+
+        /**
+         * Adds the measured iterations of another fork of the same case.
+         */
+        void add(Result other) {
+            int length = opsPerSecond.length;
+            opsPerSecond = Arrays.copyOf(opsPerSecond, length + other.opsPerSecond.length);
+            System.arraycopy(other.opsPerSecond, 0, opsPerSecond, length, other.opsPerSecond.length);
+            ops += other.ops;
+            nanos += other.nanos;
+            bytes += other.bytes;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        MazeBenchmark benchmark = new MazeBenchmark();
+        if (args.length >= 5 && args[0].equals("--case")) {
+            // A fork started by run: measure the one case and hand the numbers back on standard output
+            benchmark.parse(Arrays.copyOfRange(args, 5, args.length));
+            benchmark.runCase(args[1], args[2], Integer.parseInt(args[3]), Double.parseDouble(args[4]));
+            return;
+        }
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--algorithms":
+                    algorithms = value.split(",");
+                    break;
+                case "--sizes":
+                    String[] s = value.split(",");
+                    sizes = new int[s.length];
+                    for (int j = 0; j < s.length; j++) {
+                        sizes[j] = Integer.parseInt(s[j]);
+                    }
+                    break;
+                case "--densities":
+                    String[] d = value.split(",");
+                    densities = new double[d.length];
+                    for (int j = 0; j < d.length; j++) {
+                        densities[j] = Double.parseDouble(d[j]);
+                    }
+                    break;
+                case "--layouts":
+                    layouts = value.split(",");
+                    break;
+                case "--threads":
+                    String[] t = value.split(",");
+                    threads = new int[t.length];
+                    for (int j = 0; j < t.length; j++) {
+                        threads[j] = Integer.parseInt(t[j]);
+                    }
+                    break;
+                case "--warmup":
+                    warmupIterations = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    measurementIterations = Integer.parseInt(value);
+                    break;
+                case "--time-ms":
+                    iterationNanos = Long.parseLong(value) * 1_000_000L;
+                    break;
+                case "--forks":
+                    forks = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns 1, 2, 4 and so on up to the number of processors, which is included even if not a power of two.
+     */
+    private static int[] defaultThreads() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int count = 1; count < processors; count *= 2) {
+            counts.add(count);
+        }
+        counts.add(processors);
+        int[] result = new int[counts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the algorithms to measure, with hda replaced by one entry per thread count.
+     */
+    private List<String> cases() {
+        List<String> cases = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            if (algorithm.equals("hda")) {
+                for (int count : threads) {
+                    cases.add("hda-" + count);
+                }
+            } else {
+                cases.add(algorithm);
+            }
+        }
+        return cases;
+    }
+
+    private void run() throws IOException, InterruptedException {
+        List<Result> results = new ArrayList<>();
+        System.out.printf(Locale.ROOT, "%-6s %-9s %6s %7s %14s %16s %14s%n",
+                "algo", "layout", "size", "walls", "ops/s", "avg ns/op", "B/op");
+        for (String layout : layouts) {
+            for (int size : sizes) {
+                // Density only shapes the random layout
+                double[] caseDensities = layout.equals("random") ? densities : new double[]{0};
+                for (double density : caseDensities) {
+                    MazeGrid grid = forks > 0 ? null : MazeGenerator.generate(layout, size, size, density, size);
+                    for (String algorithm : cases()) {
+                        Result result = new Result();
+                        result.algorithm = algorithm;
+                        result.layout = layout;
+                        result.size = size;
+                        result.density = density;
+                        if (forks > 0) {
+                            for (int fork = 0; fork < forks; fork++) {
+                                result.add(fork(algorithm, layout, size, density));
+                            }
+                        } else {
+                            result.add(measure(algorithm, grid));
+                        }
+                        results.add(result);
+                        System.out.printf(Locale.ROOT, "%-6s %-9s %6d %7.2f %14.2f %16.0f %14.0f%n",
+                                algorithm, layout, size, density, mean(result.opsPerSecond), result.nanosPerOp(),
+                                result.bytesPerOp());
+                    }
+                }
+            }
+        }
+        writeJson(results);
+        System.out.println("results written to " + out);
+    }
+
+    /**
+     * Measures one case in a new JVM with the same class path, warm-up and iteration settings.
+     */
+    private Result fork(String algorithm, String layout, int size, double density)
+            throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                MazeBenchmark.class.getName(), "--case", algorithm, layout, Integer.toString(size),
+                Double.toString(density), "--warmup", Integer.toString(warmupIterations),
+                "--iterations", Integer.toString(measurementIterations),
+                "--time-ms", Long.toString(iterationNanos / 1_000_000L)));
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        String line;
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            while ((line = reader.readLine()) != null) {
+                last = line;
+            }
+        }
+        int status = process.waitFor();
+        if (status != 0 || last == null) {
+            throw new IllegalStateException("fork measuring " + algorithm + " on " + layout + " " + size
+                    + " exited with status " + status);
+        }
+        String[] fields = last.trim().split(" ");
+        Result result = new Result();
+        result.ops = Long.parseLong(fields[0]);
+        result.nanos = Long.parseLong(fields[1]);
+        result.bytes = Long.parseLong(fields[2]);
+        result.opsPerSecond = new double[fields.length - 3];
+        for (int i = 0; i < result.opsPerSecond.length; i++) {
+            result.opsPerSecond[i] = Double.parseDouble(fields[i + 3]);
+        }
+        return result;
+    }
+
+    /**
+     * Measures one case in this JVM and prints its totals and the throughput of each iteration on one line, for the
+     * JVM that forked this one.
+     */
+    private void runCase(String algorithm, String layout, int size, double density) {
+        MazeGrid grid = MazeGenerator.generate(layout, size, size, density, size);
+        Result result = measure(algorithm, grid);
+        StringBuilder line = new StringBuilder();
+        line.append(result.ops).append(' ').append(result.nanos).append(' ').append(result.bytes);
+        for (double opsPerSecond : result.opsPerSecond) {
+            line.append(' ').append(opsPerSecond);
+        }
+        System.out.println(line);
+    }
+
+    private Result measure(String algorithm, MazeGrid grid) {
+        Operation operation = operation(algorithm, grid);
+        Result result = new Result();
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                iterate(operation);
+            }
+            result.opsPerSecond = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) {
+                long bytesBefore = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long[] opsAndNanos = iterate(operation);
+                result.bytes += THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytesBefore;
+                result.ops += opsAndNanos[0];
+                result.nanos += opsAndNanos[1];
+                result.opsPerSecond[i] = opsAndNanos[0] * 1e9 / opsAndNanos[1];
+            }
+        } finally {
+            operation.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Runs the operation repeatedly for one iteration's time budget (at least once).
+     *
+     * @return The number of operations and the nanoseconds they took.
+     */
+    private long[] iterate(Operation operation) {
+        long start = System.nanoTime();
+        long ops = 0;
+        long elapsed;
+        do {
+            operation.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[]{ops, elapsed};
+    }
+
+    /**
+     * One search on a solver that was built beforehand.
+     */
+    private interface Operation {
+        void run();
+
+        /**
+         * Stops the solver's threads, if it has any, once the case has been measured.
+         */
+        default void shutdown() {
+        }
+    }
+
+    /**
+     * Builds the solver for a case and returns the operation measured on it.
+     */
+    private static Operation operation(String algorithm, MazeGrid grid) {
+        int start = grid.getStartCell();
+        int goal = grid.getGoalCell();
+        if (algorithm.startsWith("hda-")) {
+            HashDistributedAstar hda = new HashDistributedAstar(grid, Integer.parseInt(algorithm.substring(4)));
+            return new Operation() {
+                @Override
+                public void run() {
+                    hda.findPath(start, goal);
+                }
+
+                @Override
+                public void shutdown() {
+                    hda.shutdown();
+                }
+            };
+        }
+        switch (algorithm) {
+            case "astar":
+                AstarAlgorithm astar = new AstarAlgorithm(grid);
+                return () -> astar.findPath(start, goal);
+            case "jps":
+                JumpPointSearch jps = new JumpPointSearch(grid);
+                return () -> jps.findPath(start, goal);
+            case "bidir":
+                BidirectionalAstar bidirectional = new BidirectionalAstar(grid);
+                return new Operation() {
+                    @Override
+                    public void run() {
+                        bidirectional.findPath(start, goal);
+                    }
+
+                    @Override
+                    public void shutdown() {
+                        bidirectional.shutdown();
+                    }
+                };
+            case "hpa":
+                HierarchicalPathfinder hpa = new HierarchicalPathfinder(grid);
+                return () -> hpa.findPath(start, goal);
+            case "bfs":
+                BitParallelBfs bfs = new BitParallelBfs(grid);
+                return () -> bfs.findPath(start, goal);
+            case "aco":
+                ACOMazeSolver aco = new ACOMazeSolver(grid);
+                aco.setSeed(1);
+                return new Operation() {
+                    @Override
+                    public void run() {
+                        aco.findPath(start, goal);
+                    }
+
+                    @Override
+                    public void shutdown() {
+                        aco.shutdown();
+                    }
+                };
+            case "islands":
+                IslandColonies islands = new IslandColonies(grid, IslandColonies.Settings.defaults(4, 20, 1), false);
+                return new Operation() {
+                    @Override
+                    public void run() {
+                        islands.findPath(start, goal);
+                    }
+
+                    @Override
+                    public void shutdown() {
+                        islands.shutdown();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown algorithm " + algorithm);
+        }
+    }
+
+    private void writeJson(List<Result> results) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                StringBuilder raw = new StringBuilder();
+                for (int j = 0; j < r.opsPerSecond.length; j++) {
+                    raw.append(j == 0 ? "" : ", ").append(format(r.opsPerSecond[j]));
+                }
+                writer.write("  {\n");
+                writer.write("    \"benchmark\": \"" + r.algorithm + "\",\n");
+                writer.write("    \"params\": {\"layout\": \"" + r.layout + "\", \"size\": " + r.size
+                        + ", \"density\": " + format(r.density) + "},\n");
+                writer.write("    \"warmupIterations\": " + warmupIterations + ",\n");
+                writer.write("    \"measurementIterations\": " + r.opsPerSecond.length + ",\n");
+                writer.write("    \"forks\": " + forks + ",\n");
+                writer.write("    \"throughput\": {\"score\": " + format(mean(r.opsPerSecond))
+                        + ", \"stdev\": " + format(stdev(r.opsPerSecond))
+                        + ", \"unit\": \"ops/s\", \"raw\": [" + raw + "]},\n");
+                writer.write("    \"averageTime\": {\"score\": " + format(r.nanosPerOp()) + ", \"unit\": \"ns/op\"},\n");
+                writer.write("    \"allocation\": {\"bytesPerOp\": " + format(r.bytesPerOp())
+                        + ", \"rate\": " + format(r.allocMbPerSecond()) + ", \"rateUnit\": \"MB/s\"}\n");
+                writer.write(i == results.size() - 1 ? "  }\n" : "  },\n");
+            }
+            writer.write("]\n");
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double stdev(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
@@ -0,0 +1,345 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MazeGenerator builds seeded, reproducible mazes for stress tests and benchmarks.
+ * The same family, size, density and seed always give the same maze. Families:
+ * - open: no walls.
+ * - random: each cell is a wall with the given density.
+ * - corridor: a single serpentine corridor through every other row.
+ * - backtracker: a perfect maze (exactly one path between any two cells) carved by depth-first search.
+ * - kruskal: a perfect maze built by joining cells along randomly ordered walls.
+ * - rooms: rectangular rooms joined by corridors, like a dungeon map.
+ * - unsolvable: a backtracker maze whose goal is walled in.
+ * Perfect mazes put their cells on even rows and columns, with walls or passages in between.
+ * The start is the top-left cell and the goal the bottom-right-most cell the family can reach.
+ *
+ * With --tiled the maze is written as a TiledMazeStore file. The open and random families are then written cell
+ * by cell without holding the maze in memory, so they can be larger than a MazeGrid allows; a tiled random maze
+ * decides each cell by a hash of its position and the seed, so it differs from the in-memory one with that seed.
+ *
+ * java MazeGenerator <family> <rows> <columns> <seed> <out-file> [density] [--packed | --tiled]
+ */
+public final class MazeGenerator {
+    public static final String[] FAMILIES = {"open", "random", "corridor", "backtracker", "kruskal", "rooms", "unsolvable"};
+
+    private MazeGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("usage: java MazeGenerator <family> <rows> <columns> <seed> <out-file> [density] [--packed | --tiled]");
+            System.out.println("families: " + String.join(", ", FAMILIES));
+            return;
+        }
+        boolean packed = args[args.length - 1].equals("--packed");
+        boolean tiled = args[args.length - 1].equals("--tiled");
+        int argCount = packed || tiled ? args.length - 1 : args.length;
+        double density = argCount > 5 ? Double.parseDouble(args[5]) : 0.3;
+        if (tiled && (args[0].equals("open") || args[0].equals("random"))) {
+            int rows = Integer.parseInt(args[1]);
+            int columns = Integer.parseInt(args[2]);
+            double walls = args[0].equals("open") ? 0 : density;
+            TiledMazeStore.write(Paths.get(args[4]), rows, columns, TiledMazeStore.DEFAULT_TILE_SIZE,
+                    hashedRandom(rows, columns, walls, Long.parseLong(args[3])));
+            return;
+        }
+        MazeGrid grid = generate(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), density, Long.parseLong(args[3]));
+        if (tiled) {
+            TiledMazeStore.write(grid, Paths.get(args[4]), TiledMazeStore.DEFAULT_TILE_SIZE);
+        } else if (packed) {
+            MazeLoader.writePacked(grid, Paths.get(args[4]));
+        } else {
+            MazeLoader.writeText(grid, Paths.get(args[4]));
+        }
+    }
+
+    /**
+     * Generates a maze.
+     *
+     * @param family  One of {@link #FAMILIES}.
+     * @param rows    Number of rows in the maze.
+     * @param columns Number of columns in the maze.
+     * @param density Probability of a wall, used by the random family.
+     * @param seed    Seed of the random number generator.
+     * @return The maze.
+     */
+    public static MazeGrid generate(String family, int rows, int columns, double density, long seed) {
+        if (rows < 1 || columns < 1 || (long) rows * columns > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("invalid maze size " + rows + "x" + columns);
+        }
+        byte[] types = new byte[rows * columns];
+        SplittableRandom random = new SplittableRandom(seed);
+        int goal;
+        switch (family) {
+            case "open":
+                Arrays.fill(types, (byte) MazeGrid.OPEN);
+                goal = rows * columns - 1;
+                break;
+            case "random":
+                for (int cell = 0; cell < types.length; cell++) {
+                    types[cell] = (byte) (random.nextDouble() < density ? MazeGrid.WALL : MazeGrid.OPEN);
+                }
+                goal = rows * columns - 1;
+                break;
+            case "corridor":
+                corridor(types, rows, columns);
+                goal = ((rows - 1) & ~1) * columns + columns - 1;
+                break;
+            case "backtracker":
+                backtracker(types, rows, columns, random);
+                goal = lastLatticeCell(rows, columns);
+                break;
+            case "kruskal":
+                kruskal(types, rows, columns, random);
+                goal = lastLatticeCell(rows, columns);
+                break;
+            case "rooms":
+                goal = rooms(types, rows, columns, random);
+                break;
+            case "unsolvable":
+                backtracker(types, rows, columns, random);
+                goal = lastLatticeCell(rows, columns);
+                sealGoal(types, rows, columns, goal);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown maze family " + family);
+        }
+        if (goal == 0) {
+            throw new IllegalArgumentException("maze " + rows + "x" + columns + " is too small for family " + family);
+        }
+        types[0] = MazeGrid.START;
+        types[goal] = MazeGrid.GOAL;
+        return new MazeGrid(rows, columns, types);
+    }
+
+    /**
+     * Returns a random maze of any size as a cell source: each cell is a wall with the given density, decided by a
+     * hash of its position and the seed. The start is the top-left cell and the goal the bottom-right one.
+     */
+    public static TiledMazeStore.CellSource hashedRandom(int rows, int columns, double density, long seed) {
+        long threshold = (long) (density * (1L << 53));
+        return (row, col) -> {
+            if (row == 0 && col == 0) {
+                return MazeGrid.START;
+            }
+            if (row == rows - 1 && col == columns - 1) {
+                return MazeGrid.GOAL;
+            }
+            // SplitMix64 finaliser of the position and seed
+            long z = seed + ((long) row * columns + col) * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z ^= z >>> 31;
+            return (z >>> 11) < threshold ? MazeGrid.WALL : MazeGrid.OPEN;
+        };
+    }
+
+    /**
+     * Returns the bottom-right-most cell on even row and column.
+     */
+    private static int lastLatticeCell(int rows, int columns) {
+        return ((rows - 1) & ~1) * columns + ((columns - 1) & ~1);
+    }
+
+    /**
+     * Odd rows are walls except for one gap, alternating between the right and the left end.
+     */
+    private static void corridor(byte[] types, int rows, int columns) {
+        for (int row = 0; row < rows; row++) {
+            int gap = (row / 2) % 2 == 0 ? columns - 1 : 0;
+            for (int col = 0; col < columns; col++) {
+                boolean wall = row % 2 == 1 && col != gap;
+                types[row * columns + col] = (byte) (wall ? MazeGrid.WALL : MazeGrid.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Carves a perfect maze with an iterative depth-first search over the even lattice cells.
+     */
+    private static void backtracker(byte[] types, int rows, int columns, SplittableRandom random) {
+        int latticeRows = (rows + 1) / 2;
+        int latticeColumns = (columns + 1) / 2;
+        int[] stack = new int[latticeRows * latticeColumns];
+        int[] options = new int[MazeGrid.DIRECTIONS];
+        int size = 0;
+        types[0] = MazeGrid.OPEN;
+        stack[size++] = 0;
+
+        while (size > 0) {
+            int cell = stack[size - 1];
+            int row = cell / columns;
+            int col = cell % columns;
+            int count = 0;
+            if (row >= 2 && types[cell - 2 * columns] == MazeGrid.WALL) {
+                options[count++] = -columns;
+            }
+            if (row + 2 < rows && types[cell + 2 * columns] == MazeGrid.WALL) {
+                options[count++] = columns;
+            }
+            if (col >= 2 && types[cell - 2] == MazeGrid.WALL) {
+                options[count++] = -1;
+            }
+            if (col + 2 < columns && types[cell + 2] == MazeGrid.WALL) {
+                options[count++] = 1;
+            }
+            if (count == 0) {
+                size--;
+                continue;
+            }
+            int step = options[random.nextInt(count)];
+            types[cell + step] = MazeGrid.OPEN;
+            types[cell + 2 * step] = MazeGrid.OPEN;
+            stack[size++] = cell + 2 * step;
+        }
+    }
+
+    /**
+     * Builds a perfect maze by visiting the walls between lattice cells in random order and opening every wall
+     * that joins two cells not yet connected.
+     */
+    private static void kruskal(byte[] types, int rows, int columns, SplittableRandom random) {
+        int latticeRows = (rows + 1) / 2;
+        int latticeColumns = (columns + 1) / 2;
+        int latticeCells = latticeRows * latticeColumns;
+        int[] parent = new int[latticeCells];
+        for (int i = 0; i < latticeCells; i++) {
+            parent[i] = i;
+        }
+
+        // Wall 2 * c joins lattice cell c to the cell on its right, wall 2 * c + 1 to the cell below it
+        int[] walls = new int[2 * latticeCells];
+        int count = 0;
+        for (int c = 0; c < latticeCells; c++) {
+            if (c % latticeColumns + 1 < latticeColumns) {
+                walls[count++] = 2 * c;
+            }
+            if (c / latticeColumns + 1 < latticeRows) {
+                walls[count++] = 2 * c + 1;
+            }
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = walls[i];
+            walls[i] = walls[j];
+            walls[j] = swap;
+        }
+
+        for (int c = 0; c < latticeCells; c++) {
+            types[latticeToCell(c, latticeColumns, columns)] = MazeGrid.OPEN;
+        }
+        for (int i = 0; i < count; i++) {
+            int c = walls[i] / 2;
+            int other = walls[i] % 2 == 0 ? c + 1 : c + latticeColumns;
+            int rootC = find(parent, c);
+            int rootOther = find(parent, other);
+            if (rootC != rootOther) {
+                parent[rootC] = rootOther;
+                int from = latticeToCell(c, latticeColumns, columns);
+                int to = latticeToCell(other, latticeColumns, columns);
+                types[(from + to) / 2] = MazeGrid.OPEN;
+            }
+        }
+    }
+
+    private static int latticeToCell(int latticeCell, int latticeColumns, int columns) {
+        return 2 * (latticeCell / latticeColumns) * columns + 2 * (latticeCell % latticeColumns);
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Places random non-overlapping rooms and joins each room to the next with an L-shaped corridor.
+     * The first room holds the start and the last room the goal.
+     *
+     * @return The goal cell.
+     */
+    private static int rooms(byte[] types, int rows, int columns, SplittableRandom random) {
+        int maxRoom = Math.max(2, Math.min(rows, columns) / 8);
+        int attempts = Math.max(4, (int) Math.min(100_000L, (long) rows * columns / (maxRoom * maxRoom)));
+        int[] roomCenters = new int[attempts];
+        int roomCount = 0;
+
+        // The first room sits in the top-left corner so that it contains the start cell
+        carveRoom(types, columns, 0, 0, Math.min(rows, maxRoom), Math.min(columns, maxRoom));
+        roomCenters[roomCount++] = 0;
+        for (int i = 1; i < attempts; i++) {
+            int height = 2 + random.nextInt(maxRoom - 1);
+            int width = 2 + random.nextInt(maxRoom - 1);
+            if (height + 2 > rows || width + 2 > columns) {
+                continue;
+            }
+            int top = 1 + random.nextInt(rows - height - 1);
+            int left = 1 + random.nextInt(columns - width - 1);
+            if (overlaps(types, columns, top - 1, left - 1, height + 2, width + 2)) {
+                continue;
+            }
+            carveRoom(types, columns, top, left, height, width);
+            roomCenters[roomCount++] = (top + height / 2) * columns + left + width / 2;
+        }
+
+        for (int i = 1; i < roomCount; i++) {
+            int from = roomCenters[i - 1];
+            int to = roomCenters[i];
+            int fromRow = from / columns;
+            int toRow = to / columns;
+            int toCol = to % columns;
+            int col = from % columns;
+            // Horizontal leg along the row of the first room, then vertical leg along the column of the second
+            for (; col != toCol; col += Integer.signum(toCol - col)) {
+                types[fromRow * columns + col] = MazeGrid.OPEN;
+            }
+            for (int row = fromRow; row != toRow; row += Integer.signum(toRow - row)) {
+                types[row * columns + toCol] = MazeGrid.OPEN;
+            }
+            types[to] = MazeGrid.OPEN;
+        }
+        return roomCenters[roomCount - 1] == 0 ? rows * columns - 1 : roomCenters[roomCount - 1];
+    }
+
+    private static void carveRoom(byte[] types, int columns, int top, int left, int height, int width) {
+        for (int row = top; row < top + height; row++) {
+            Arrays.fill(types, row * columns + left, row * columns + left + width, (byte) MazeGrid.OPEN);
+        }
+    }
+
+    private static boolean overlaps(byte[] types, int columns, int top, int left, int height, int width) {
+        for (int row = top; row < top + height; row++) {
+            for (int col = left; col < left + width; col++) {
+                if (types[row * columns + col] != MazeGrid.WALL) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turns every neighbour of the goal into a wall, so no path can reach it.
+     */
+    private static void sealGoal(byte[] types, int rows, int columns, int goal) {
+        int row = goal / columns;
+        int col = goal % columns;
+        if (row > 0) {
+            types[goal - columns] = MazeGrid.WALL;
+        }
+        if (row < rows - 1) {
+            types[goal + columns] = MazeGrid.WALL;
+        }
+        if (col > 0) {
+            types[goal - 1] = MazeGrid.WALL;
+        }
+        if (col < columns - 1) {
+            types[goal + 1] = MazeGrid.WALL;
+        }
+    }
+}
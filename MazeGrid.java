@@ -0,0 +1,283 @@
+/**
+ * MazeGrid is an immutable, compact representation of a maze shared by all solvers.
+ * Cells are addressed by a single index (row * columns + col) and stored one byte each:
+ * the low four bits are a mask of the open neighbours of the cell and the next two bits hold the cell type.
+ */
+public final class MazeGrid {
+    // Constants to represent different types of cells in the maze
+    public static final int WALL = 0;
+    public static final int OPEN = 1;
+    public static final int START = 2;
+    public static final int GOAL = 3;
+
+    // Directions to a neighbouring cell
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+    public static final int DIRECTIONS = 4;
+
+    private static final int TYPE_SHIFT = 4;
+    private static final int MASK_BITS = 0x0F;
+
+    private final int rows;       // Number of rows in the maze
+    private final int columns;    // Number of columns in the maze
+    private final byte[] cells;   // Neighbour mask and type of each cell
+    private final int[] offsets;  // Index offset of a move in each direction
+    private final int startCell;  // Cell index of the start position, or -1
+    private final int goalCell;   // Cell index of the goal position, or -1
+    private volatile long contentHash; // Hash of the cells, or 0 until first asked for
+
+    /**
+     * Constructor for MazeGrid class.
+     *
+     * @param rows    Number of rows in the maze.
+     * @param columns Number of columns in the maze.
+     * @param types   Type of each cell by cell index (WALL, OPEN, START or GOAL). The array is taken over, not copied.
+     */
+    MazeGrid(int rows, int columns, byte[] types) {
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = types;
+        this.offsets = new int[]{-columns, columns, -1, 1};
+
+        int start = -1;
+        int goal = -1;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (types[cell] < WALL || types[cell] > GOAL) {
+                throw new IllegalArgumentException("invalid cell value " + types[cell] + " at cell " + cell);
+            } else if (types[cell] == START) {
+                start = cell;
+            } else if (types[cell] == GOAL) {
+                goal = cell;
+            }
+        }
+        startCell = start;
+        goalCell = goal;
+
+        // Types first, then masks, since a mask depends on the types of the neighbours
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = (byte) (cells[cell] << TYPE_SHIFT);
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (getType(cell) != WALL) {
+                cells[cell] |= computeMask(cell);
+            }
+        }
+    }
+
+    private MazeGrid(MazeGrid source, byte[] cells, int startCell, int goalCell) {
+        this.rows = source.rows;
+        this.columns = source.columns;
+        this.offsets = source.offsets;
+        this.cells = cells;
+        this.startCell = startCell;
+        this.goalCell = goalCell;
+    }
+
+    /**
+     * Returns a copy of this grid with one cell changed. This grid is left untouched, so solvers still using it
+     * are not disturbed. Only the masks of the cell and its neighbours are recomputed.
+     *
+     * @param cell The index of the cell.
+     * @param type The new type of the cell (WALL, OPEN, START or GOAL).
+     * @return The changed grid.
+     */
+    public MazeGrid withCell(int cell, int type) {
+        if (type < WALL || type > GOAL) {
+            throw new IllegalArgumentException("invalid cell value " + type + " at cell " + cell);
+        }
+        byte[] copy = cells.clone();
+        int start = type == START ? cell : (cell == startCell ? -1 : startCell);
+        int goal = type == GOAL ? cell : (cell == goalCell ? -1 : goalCell);
+        MazeGrid changed = new MazeGrid(this, copy, start, goal);
+        copy[cell] = (byte) (type << TYPE_SHIFT);
+        changed.refreshMask(cell);
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            int neighbor = changed.neighborInBounds(cell, direction);
+            if (neighbor >= 0) {
+                changed.refreshMask(neighbor);
+            }
+        }
+        return changed;
+    }
+
+    private void refreshMask(int cell) {
+        cells[cell] &= ~MASK_BITS;
+        if (getType(cell) != WALL) {
+            cells[cell] |= computeMask(cell);
+        }
+    }
+
+    /**
+     * Returns the neighbour of a cell in the given direction, wall or not, or -1 if it lies outside the maze.
+     */
+    public int neighborInBounds(int cell, int direction) {
+        int row = cell / columns;
+        int col = cell % columns;
+        switch (direction) {
+            case UP:
+                return row > 0 ? cell - columns : -1;
+            case DOWN:
+                return row < rows - 1 ? cell + columns : -1;
+            case LEFT:
+                return col > 0 ? cell - 1 : -1;
+            default:
+                return col < columns - 1 ? cell + 1 : -1;
+        }
+    }
+
+    /**
+     * Builds a grid from the two-dimensional representation read by Main.
+     *
+     * @param rows    Number of rows in the maze.
+     * @param columns Number of columns in the maze.
+     * @param maze    Type of each cell (0 = wall, 1 = open, 2 = start, 3 = goal).
+     * @return The grid.
+     */
+    public static MazeGrid fromArray(int rows, int columns, int[][] maze) {
+        byte[] types = new byte[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                types[i * columns + j] = (byte) maze[i][j];
+            }
+        }
+        return new MazeGrid(rows, columns, types);
+    }
+
+    private int computeMask(int cell) {
+        int row = cell / columns;
+        int col = cell % columns;
+        int mask = 0;
+        if (row > 0 && getType(cell - columns) != WALL) {
+            mask |= 1 << UP;
+        }
+        if (row < rows - 1 && getType(cell + columns) != WALL) {
+            mask |= 1 << DOWN;
+        }
+        if (col > 0 && getType(cell - 1) != WALL) {
+            mask |= 1 << LEFT;
+        }
+        if (col < columns - 1 && getType(cell + 1) != WALL) {
+            mask |= 1 << RIGHT;
+        }
+        return mask;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * Returns a 64-bit hash of the maze's size and cells, computed on first use. Grids with the same content have
+     * the same hash, and any edit made through {@link #withCell} gives, with overwhelming likelihood, a different
+     * one, so the hash can stand for the maze version in caches.
+     */
+    public long getContentHash() {
+        long hash = contentHash;
+        if (hash == 0) {
+            // FNV-1a
+            hash = 0xcbf29ce484222325L;
+            hash = (hash ^ rows) * 0x100000001b3L;
+            hash = (hash ^ columns) * 0x100000001b3L;
+            for (byte cell : cells) {
+                hash = (hash ^ (cell & 0xFF)) * 0x100000001b3L;
+            }
+            if (hash == 0) {
+                hash = 1;
+            }
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    public int getStartCell() {
+        return startCell;
+    }
+
+    public int getGoalCell() {
+        return goalCell;
+    }
+
+    /**
+     * Returns the type of a cell (WALL, OPEN, START or GOAL).
+     */
+    public int getType(int cell) {
+        return (cells[cell] >> TYPE_SHIFT) & 0x03;
+    }
+
+    public boolean isWall(int cell) {
+        return getType(cell) == WALL;
+    }
+
+    /**
+     * Returns a mask with bit d set when the neighbour in direction d is inside the maze and not a wall.
+     * Walls have an empty mask.
+     */
+    public int getNeighborMask(int cell) {
+        return cells[cell] & MASK_BITS;
+    }
+
+    /**
+     * Returns whether the neighbour of a cell in the given direction can be entered.
+     */
+    public boolean hasNeighbor(int cell, int direction) {
+        return (cells[cell] & (1 << direction)) != 0;
+    }
+
+    /**
+     * Returns the index of the neighbour of a cell in the given direction. The caller checks the neighbour mask first.
+     */
+    public int neighbor(int cell, int direction) {
+        return cell + offsets[direction];
+    }
+
+    /**
+     * Returns the direction that leads from one cell to an adjacent cell.
+     */
+    public int direction(int fromCell, int toCell) {
+        int delta = toCell - fromCell;
+        if (delta == -columns) {
+            return UP;
+        } else if (delta == columns) {
+            return DOWN;
+        } else if (delta == -1) {
+            return LEFT;
+        }
+        return RIGHT;
+    }
+
+    /**
+     * Returns the direction pointing the opposite way.
+     */
+    public static int opposite(int direction) {
+        return direction ^ 1;
+    }
+
+    public int row(int cell) {
+        return cell / columns;
+    }
+
+    public int col(int cell) {
+        return cell % columns;
+    }
+
+    public int index(int row, int col) {
+        return row * columns + col;
+    }
+
+    /**
+     * Returns the Manhattan distance between two cells.
+     */
+    public int manhattan(int cell, int otherCell) {
+        return Math.abs(row(cell) - row(otherCell)) + Math.abs(col(cell) - col(otherCell));
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MazeLoadGenerator sends path queries to a MazeServer from several clients at once and reports latency percentiles
+ * and throughput. It reads the same maze file the server loaded, so its queries run between open cells; the start
+ * and goal cells are drawn from a seeded random generator, so runs can be repeated. Each client sends its next query
+ * as soon as the previous one is answered.
+ *
+ * java MazeLoadGenerator <maze-file> [--url http://localhost:8080] [--maze id] [--clients 16] [--requests 2000]
+ *                        [--algorithm astar] [--deadline-ms 1000] [--distinct 0] [--seed 1]
+ *
+ * --maze defaults to the file name, as MazeServer names mazes given without an ID. With --distinct N the queries are
+ * drawn from N fixed pairs of cells, which shows how much batching saves on repeated queries; 0 draws every query
+ * afresh.
+ */
+public final class MazeLoadGenerator {
+    private String url = "http://localhost:" + MazeServer.DEFAULT_PORT;
+    private String maze;
+    private Path mazeFile;
+    private int clients = 16;
+    private int requests = 2000;
+    private String algorithm = "astar";
+    private long deadlineMillis = 1000;
+    private int distinct;
+    private long seed = 1;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        MazeLoadGenerator generator = new MazeLoadGenerator();
+        if (!generator.parse(args)) {
+            System.out.println("usage: java MazeLoadGenerator <maze-file> [--url http://localhost:8080] [--maze id]"
+                    + " [--clients 16] [--requests 2000] [--algorithm astar] [--deadline-ms 1000] [--distinct 0] [--seed 1]");
+            return;
+        }
+        generator.run();
+    }
+
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                mazeFile = Paths.get(args[i]);
+                continue;
+            }
+            if (i + 1 == args.length) {
+                return false;
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--url":
+                    url = value;
+                    break;
+                case "--maze":
+                    maze = value;
+                    break;
+                case "--clients":
+                    clients = Integer.parseInt(value);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(value);
+                    break;
+                case "--algorithm":
+                    algorithm = value;
+                    break;
+                case "--deadline-ms":
+                    deadlineMillis = Long.parseLong(value);
+                    break;
+                case "--distinct":
+                    distinct = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i - 1]);
+            }
+        }
+        if (mazeFile == null) {
+            return false;
+        }
+        if (maze == null) {
+            maze = mazeFile.getFileName().toString();
+        }
+        return true;
+    }
+
+    private void run() throws IOException, InterruptedException {
+        MazeGrid grid = MazeLoader.load(mazeFile);
+        String[] queries = queries(grid);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long[] latencies = new long[requests];           // Nanoseconds of each request, in the order they finished
+        AtomicInteger next = new AtomicInteger();        // Next query to send
+        AtomicInteger done = new AtomicInteger();        // Requests answered, in any way
+        AtomicInteger found = new AtomicInteger();       // 200 with a path
+        AtomicInteger noPath = new AtomicInteger();      // 200 without a path
+        AtomicInteger timedOut = new AtomicInteger();    // 504
+        AtomicInteger failed = new AtomicInteger();      // Any other status, or no answer
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long started = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(queries[i]))
+                            .timeout(Duration.ofMillis(deadlineMillis + 5000))
+                            .GET()
+                            .build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() == 200) {
+                            (response.body().contains("\"found\":true") ? found : noPath).incrementAndGet();
+                        } else if (response.statusCode() == 504) {
+                            timedOut.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    latencies[done.getAndIncrement()] = System.nanoTime() - sent;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - started;
+
+        int count = done.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%d requests to %s/mazes/%s with %d clients, algorithm %s%n",
+                count, url, maze, clients, algorithm);
+        System.out.printf(Locale.ROOT, "found %d, no path %d, deadline missed %d, failed %d%n",
+                found.get(), noPath.get(), timedOut.get(), failed.get());
+        System.out.printf(Locale.ROOT, "throughput %.1f requests/s%n", count * 1e9 / elapsed);
+        System.out.printf(Locale.ROOT, "latency ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0));
+    }
+
+    /**
+     * Builds the URL of every request, between random open cells of the maze.
+     */
+    private String[] queries(MazeGrid grid) {
+        int[] open = new int[grid.getCellCount()];
+        int openCount = 0;
+        for (int cell = 0; cell < grid.getCellCount(); cell++) {
+            if (!grid.isWall(cell)) {
+                open[openCount++] = cell;
+            }
+        }
+        if (openCount == 0) {
+            throw new IllegalArgumentException("maze " + mazeFile + " has no open cells");
+        }
+        Random random = new Random(seed);
+        int pairs = distinct > 0 ? distinct : requests;
+        String[] pairUrls = new String[pairs];
+        for (int i = 0; i < pairs; i++) {
+            int start = open[random.nextInt(openCount)];
+            int goal = open[random.nextInt(openCount)];
+            pairUrls[i] = url + "/mazes/" + maze + "/path?start=" + grid.row(start) + "," + grid.col(start)
+                    + "&goal=" + grid.row(goal) + "," + grid.col(goal)
+                    + "&algorithm=" + algorithm + "&deadline-ms=" + deadlineMillis;
+        }
+        String[] urls = new String[requests];
+        for (int i = 0; i < requests; i++) {
+            urls[i] = pairUrls[distinct > 0 ? random.nextInt(pairs) : i];
+        }
+        return urls;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MazeLoader reads maze files straight into a MazeGrid by memory-mapping them.
+ * Two formats are supported:
+ * - text: one row per line, one digit (0 = wall, 1 = open, 2 = start, 3 = goal) per cell, digits optionally
+ *   separated by spaces, like the repository's maze file. Blank lines are ignored.
+ * - packed: the magic bytes "MAZ2", the row and column counts as big-endian ints, then 2 bits per cell,
+ *   four cells per byte with the first cell in the lowest bits.
+ */
+public final class MazeLoader {
+    private static final byte[] PACKED_MAGIC = {'M', 'A', 'Z', '2'};
+    private static final int PACKED_HEADER = 12;
+    private static final long MAP_CHUNK = 1L << 30; // Bytes mapped at a time
+
+    private MazeLoader() {
+    }
+
+    /**
+     * Loads a maze file in either format, telling them apart by the magic bytes.
+     *
+     * @param file The maze file.
+     * @return The maze.
+     */
+    public static MazeGrid load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() >= PACKED_HEADER) {
+                ByteBuffer magic = ByteBuffer.allocate(PACKED_MAGIC.length);
+                channel.read(magic, 0);
+                if (Arrays.equals(magic.array(), PACKED_MAGIC)) {
+                    return readPacked(channel);
+                }
+            }
+            return readText(channel);
+        }
+    }
+
+    /**
+     * Parses a text maze in a single pass over the mapped file. Every digit is one cell and every line break
+     * that follows a non-empty line ends a row.
+     */
+    private static MazeGrid readText(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long maxCells = (size + 1) / 2 + 1;
+        byte[] types = new byte[(int) Math.min(Math.max(maxCells, 16), Integer.MAX_VALUE - 8)];
+        int cells = 0;
+        int rows = 0;
+        int columns = -1;
+        int rowCells = 0;
+
+        for (long position = 0; position < size; position += MAP_CHUNK) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position));
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b >= '0' && b <= '9') {
+                    if (b > '3') {
+                        throw new IOException("invalid cell value " + (char) b + " in row " + rows);
+                    }
+                    if (cells == types.length) {
+                        types = Arrays.copyOf(types, (int) Math.min(types.length * 2L, Integer.MAX_VALUE - 8));
+                    }
+                    types[cells++] = (byte) (b - '0');
+                    rowCells++;
+                } else if (b == '\n') {
+                    if (rowCells > 0) {
+                        columns = endRow(rows, columns, rowCells);
+                        rows++;
+                        rowCells = 0;
+                    }
+                } else if (b != ' ' && b != '\t' && b != '\r' && b != ',') {
+                    throw new IOException("unexpected character '" + (char) b + "' in row " + rows);
+                }
+            }
+        }
+        if (rowCells > 0) {
+            columns = endRow(rows, columns, rowCells);
+            rows++;
+        }
+        if (rows == 0) {
+            throw new IOException("maze file is empty");
+        }
+        return new MazeGrid(rows, columns, cells == types.length ? types : Arrays.copyOf(types, cells));
+    }
+
+    private static int endRow(int row, int columns, int rowCells) throws IOException {
+        if (columns >= 0 && rowCells != columns) {
+            throw new IOException("row " + row + " has " + rowCells + " cells, expected " + columns);
+        }
+        return rowCells;
+    }
+
+    private static MazeGrid readPacked(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PACKED_HEADER).order(ByteOrder.BIG_ENDIAN);
+        channel.read(header, 0);
+        int rows = header.getInt(4);
+        int columns = header.getInt(8);
+        long cellCount = (long) rows * columns;
+        if (rows <= 0 || columns <= 0 || cellCount > Integer.MAX_VALUE - 8) {
+            throw new IOException("invalid packed maze size " + rows + "x" + columns);
+        }
+        long dataSize = (cellCount + 3) / 4;
+        if (channel.size() < PACKED_HEADER + dataSize) {
+            throw new IOException("packed maze file is truncated");
+        }
+
+        byte[] types = new byte[(int) cellCount];
+        int cell = 0;
+        for (long position = 0; position < dataSize; position += MAP_CHUNK) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, PACKED_HEADER + position, Math.min(MAP_CHUNK, dataSize - position));
+            while (buffer.hasRemaining()) {
+                int packed = buffer.get();
+                for (int shift = 0; shift < 8 && cell < types.length; shift += 2) {
+                    types[cell++] = (byte) ((packed >> shift) & 0x03);
+                }
+            }
+        }
+        return new MazeGrid(rows, columns, types);
+    }
+
+    /**
+     * Writes a maze in the text format, one row at a time through a reused byte buffer.
+     *
+     * @param grid The maze.
+     * @param file The file to write.
+     */
+    public static void writeText(MazeGrid grid, Path file) throws IOException {
+        int rows = grid.getRows();
+        int columns = grid.getColumns();
+        byte[] line = new byte[2 * columns];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            for (int row = 0; row < rows; row++) {
+                int cell = row * columns;
+                for (int col = 0; col < columns; col++) {
+                    line[2 * col] = (byte) ('0' + grid.getType(cell + col));
+                    line[2 * col + 1] = ' ';
+                }
+                line[line.length - 1] = '\n';
+                out.write(line);
+            }
+        }
+    }
+
+    /**
+     * Writes a maze in the packed format, for fast reloads.
+     *
+     * @param grid The maze.
+     * @param file The file to write.
+     */
+    public static void writePacked(MazeGrid grid, Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            ByteBuffer header = ByteBuffer.allocate(PACKED_HEADER).order(ByteOrder.BIG_ENDIAN);
+            header.put(PACKED_MAGIC).putInt(grid.getRows()).putInt(grid.getColumns());
+            out.write(header.array());
+
+            int cells = grid.getCellCount();
+            for (int cell = 0; cell < cells; cell += 4) {
+                int packed = 0;
+                for (int i = 0; i < 4 && cell + i < cells; i++) {
+                    packed |= grid.getType(cell + i) << (2 * i);
+                }
+                out.write(packed);
+            }
+        }
+    }
+}
@@ -0,0 +1,539 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MazeServer answers path queries over HTTP on a long-running local process, listening on the loopback interface
+ * only. Mazes are loaded once at startup, each
+ * under an ID, and every query names the maze, the two cells and the algorithm:
+ *
+ *     GET /mazes                              the loaded mazes
+ *     GET /mazes/{id}                         size, start, goal and query counters of one maze
+ *     GET /mazes/{id}/path?start=r,c&goal=r,c&algorithm=astar&deadline-ms=1000
+ *
+ * start and goal default to the maze's own, algorithm to astar and deadline-ms to DEFAULT_DEADLINE_MS. Answers are
+ * JSON; a query that misses its deadline gets 504.
+ *
+ * A small fixed pool of request threads parses each query, queues it for its maze and moves on; the answer is
+ * written when the query's batch has solved it or its deadline has passed, so no thread sits waiting on a query.
+ * At most MAX_IN_FLIGHT queries are queued or being solved at once; beyond that, queries get 503. Queries
+ * for the same maze are solved in batches by one solver thread at a time, because the maze's BatchSolver keeps its
+ * solvers' buffers between queries: whatever queued up while the previous batch ran is taken at once, identical
+ * queries in it are solved once, and A* batches are spread over the solver threads. Queries whose deadline passed
+ * while they were queued are dropped without being solved; a search already running is not interrupted.
+ *
+ * java MazeServer [--port 8080] [--threads N] [--cache-entries 10000] <id>=<maze-file> ...
+ */
+public final class MazeServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final long DEFAULT_DEADLINE_MS = 10_000;
+    private static final int MAX_BATCH = 256;          // Most queries taken from a maze's queue at once
+    private static final int PARALLEL_BATCH = 8;       // Fewest distinct A* queries worth spreading over threads
+    private static final int MAX_IN_FLIGHT = 10_000;   // Most queries queued or being solved at once
+    private static final List<String> ALGORITHMS =
+            Arrays.asList("astar", "aco", "jps", "hpa", "bidir", "bidir-threads", "bfs");
+
+    static {
+        // The JDK server writes the headers and the body of an answer separately; with Nagle's algorithm on, the body
+        // then waits for the client's delayed acknowledgement, which adds some 40 ms to every keep-alive request.
+        // The property is read once, when the first server is created, so it is set here rather than in the constructor.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService requestThreads;      // Parse requests and write answers
+    private final ExecutorService solverThreads;       // Runs the batches
+    private final int threads;
+    private final PathCache pathCache;                 // Shared by all mazes, or null
+    private final Map<String, MazeService> mazes = new LinkedHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger(); // Queries queued or being solved
+
+    /**
+     * One query waiting for its path.
+     */
+    private static final class Query {
+        final int startCell;
+        final int goalCell;
+        final String algorithm;
+        final long deadline;                            // System.nanoTime() after which nobody waits for the answer
+        final CompletableFuture<int[]> path = new CompletableFuture<>();
+
+        Query(int startCell, int goalCell, String algorithm, long deadline) {
+            this.startCell = startCell;
+            this.goalCell = goalCell;
+            this.algorithm = algorithm;
+            this.deadline = deadline;
+        }
+
+        boolean sameSearch(Query other) {
+            return startCell == other.startCell && goalCell == other.goalCell && algorithm.equals(other.algorithm);
+        }
+    }
+
+    /**
+     * A loaded maze and the queue of queries against it. At most one batch of a maze runs at a time.
+     */
+    private final class MazeService {
+        final String id;
+        final BatchSolver solver;
+        final ConcurrentLinkedQueue<Query> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicLong queries = new AtomicLong();    // Queries received
+        final AtomicLong batches = new AtomicLong();    // Batches run
+        final AtomicLong shared = new AtomicLong();     // Queries answered by an identical query's search
+        final AtomicLong expired = new AtomicLong();    // Queries dropped because their deadline passed first
+
+        MazeService(String id, MazeGrid grid) {
+            this.id = id;
+            this.solver = new BatchSolver(grid);
+            if (pathCache != null) {
+                solver.setPathCache(pathCache);
+            }
+        }
+
+        void submit(Query query) {
+            queries.incrementAndGet();
+            queue.add(query);
+            schedule();
+        }
+
+        /**
+         * Starts a batch unless one is running; a running batch looks at the queue again before it stops.
+         */
+        private void schedule() {
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                solverThreads.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            List<Query> batch = new ArrayList<>();
+            try {
+                Query query;
+                while (batch.size() < MAX_BATCH && (query = queue.poll()) != null) {
+                    batch.add(query);
+                }
+                if (!batch.isEmpty()) {
+                    batches.incrementAndGet();
+                    solveBatch(batch);
+                }
+            } catch (RuntimeException | Error e) {
+                // Fail the batch rather than leave its callers waiting for their deadlines
+                for (Query query : batch) {
+                    query.path.completeExceptionally(e);
+                }
+                throw e;
+            } finally {
+                draining.set(false);
+                schedule();
+            }
+        }
+
+        private void solveBatch(List<Query> batch) {
+            long now = System.nanoTime();
+            // The distinct searches of the batch, each with the queries waiting for it
+            List<Query> searches = new ArrayList<>();
+            List<List<Query>> waiting = new ArrayList<>();
+            for (Query query : batch) {
+                if (query.path.isDone()) {
+                    // Its deadline passed while it was queued, and it has been answered already
+                    expired.incrementAndGet();
+                    continue;
+                }
+                if (now - query.deadline > 0) {
+                    expired.incrementAndGet();
+                    query.path.completeExceptionally(new TimeoutException());
+                    continue;
+                }
+                int found = -1;
+                for (int i = 0; i < searches.size() && found < 0; i++) {
+                    if (searches.get(i).sameSearch(query)) {
+                        found = i;
+                    }
+                }
+                if (found < 0) {
+                    searches.add(query);
+                    List<Query> list = new ArrayList<>(1);
+                    list.add(query);
+                    waiting.add(list);
+                } else {
+                    shared.incrementAndGet();
+                    waiting.get(found).add(query);
+                }
+            }
+            int[][] paths = solveAll(searches);
+            for (int i = 0; i < searches.size(); i++) {
+                for (Query query : waiting.get(i)) {
+                    query.path.complete(paths[i]);
+                }
+            }
+        }
+
+        private int[][] solveAll(List<Query> searches) {
+            int[][] paths = new int[searches.size()][];
+            List<Integer> astar = new ArrayList<>();
+            for (int i = 0; i < searches.size(); i++) {
+                Query query = searches.get(i);
+                if (query.algorithm.equals("astar")) {
+                    astar.add(i);
+                } else {
+                    paths[i] = solver.solve(query.startCell, query.goalCell, query.algorithm);
+                }
+            }
+            if (threads > 1 && astar.size() >= PARALLEL_BATCH) {
+                // AstarAlgorithm is safe to share between threads, the other solvers are not
+                int[] startCells = new int[astar.size()];
+                int[] goalCells = new int[astar.size()];
+                for (int i = 0; i < startCells.length; i++) {
+                    startCells[i] = searches.get(astar.get(i)).startCell;
+                    goalCells[i] = searches.get(astar.get(i)).goalCell;
+                }
+                int[][] found = solver.solveAllParallel(startCells, goalCells, threads);
+                for (int i = 0; i < found.length; i++) {
+                    paths[astar.get(i)] = found[i];
+                }
+            } else {
+                for (int i : astar) {
+                    paths[i] = solver.solve(searches.get(i).startCell, searches.get(i).goalCell, "astar");
+                }
+            }
+            return paths;
+        }
+    }
+
+    /**
+     * Constructor for MazeServer class. The server does not listen until start is called.
+     *
+     * @param port         Port to listen on, on the loopback interface; 0 picks a free one.
+     * @param threads      Number of solver threads.
+     * @param cacheEntries Number of paths kept by the path cache shared by all mazes, or 0 for none.
+     */
+    public MazeServer(int port, int threads, int cacheEntries) throws IOException {
+        this.threads = threads;
+        this.pathCache = cacheEntries > 0 ? new PathCache(cacheEntries) : null;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // Requests only take a thread while they are parsed and while their answer is written
+        requestThreads = Executors.newFixedThreadPool(Math.max(2, threads), daemonThreads("maze-request"));
+        solverThreads = Executors.newFixedThreadPool(threads, daemonThreads("maze-solver"));
+        server.setExecutor(requestThreads);
+        server.createContext("/mazes", this::handle);
+    }
+
+    /**
+     * Makes a maze available under an ID. Mazes should be added before start is called.
+     */
+    public synchronized void addMaze(String id, MazeGrid grid) {
+        mazes.put(id, new MazeService(id, grid));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the ones in flight and stops the threads.
+     */
+    public void stop() {
+        server.stop(1);
+        requestThreads.shutdownNow();
+        solverThreads.shutdownNow();
+        synchronized (this) {
+            for (MazeService maze : mazes.values()) {
+                maze.solver.shutdown();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cacheEntries = 10_000;
+        Map<String, Path> files = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache-entries":
+                    cacheEntries = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    int equals = args[i].indexOf('=');
+                    if (equals < 0) {
+                        // Without an ID, the maze goes by its file name
+                        Path file = Paths.get(args[i]);
+                        files.put(file.getFileName().toString(), file);
+                    } else {
+                        files.put(args[i].substring(0, equals), Paths.get(args[i].substring(equals + 1)));
+                    }
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("usage: java MazeServer [--port 8080] [--threads N] [--cache-entries 10000] <id>=<maze-file> ...");
+            return;
+        }
+        MazeServer server = new MazeServer(port, threads, cacheEntries);
+        for (Map.Entry<String, Path> entry : files.entrySet()) {
+            MazeGrid grid = MazeLoader.load(entry.getValue());
+            server.addMaze(entry.getKey(), grid);
+            System.out.println("loaded maze " + entry.getKey() + ": " + grid.getRows() + "x" + grid.getColumns());
+        }
+        server.start();
+        System.out.println("listening on port " + server.getPort() + " with " + threads + " solver threads");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean answeredLater = false;
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, error("only GET is supported"));
+                return;
+            }
+            String requestPath = exchange.getRequestURI().getPath();
+            // The context matches any path starting with /mazes, /mazesfoo included
+            if (!requestPath.equals("/mazes") && !requestPath.startsWith("/mazes/")) {
+                respond(exchange, 404, error("unknown path " + requestPath));
+                return;
+            }
+            String[] parts = requestPath.split("/");
+            // parts[0] is the empty string before the leading slash, parts[1] is "mazes"
+            if (parts.length == 2) {
+                respond(exchange, 200, listMazes());
+                return;
+            }
+            MazeService maze;
+            synchronized (this) {
+                maze = mazes.get(parts[2]);
+            }
+            if (maze == null) {
+                respond(exchange, 404, error("no maze " + parts[2]));
+            } else if (parts.length == 3) {
+                respond(exchange, 200, describe(maze));
+            } else if (parts.length == 4 && parts[3].equals("path")) {
+                answeredLater = query(exchange, maze);
+            } else {
+                respond(exchange, 404, error("unknown path " + requestPath));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, error(String.valueOf(e)));
+        } finally {
+            if (!answeredLater) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Queues a query for its maze. The answer is written later, on a request thread, once the query is solved or
+     * its deadline passes.
+     *
+     * @return True if the query was queued, false if it was answered at once.
+     */
+    private boolean query(HttpExchange exchange, MazeService maze) throws IOException {
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+        MazeGrid grid = maze.solver.getGrid();
+        int startCell = parameters.containsKey("start") ? parseCell(grid, parameters.get("start")) : grid.getStartCell();
+        int goalCell = parameters.containsKey("goal") ? parseCell(grid, parameters.get("goal")) : grid.getGoalCell();
+        String algorithm = parameters.getOrDefault("algorithm", "astar");
+        if (!ALGORITHMS.contains(algorithm)) {
+            throw new IllegalArgumentException("unknown algorithm " + algorithm + ", expected one of " + ALGORITHMS);
+        }
+        long deadlineMillis = parameters.containsKey("deadline-ms")
+                ? parseNumber("deadline-ms", parameters.get("deadline-ms")) : DEFAULT_DEADLINE_MS;
+        if (inFlight.incrementAndGet() > MAX_IN_FLIGHT) {
+            inFlight.decrementAndGet();
+            respond(exchange, 503, error("too many queries in flight, try again later"));
+            return false;
+        }
+        long received = System.nanoTime();
+        Query query = new Query(startCell, goalCell, algorithm, received + TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+        // Completes the query with a TimeoutException at its deadline unless it has been answered by then
+        query.path.orTimeout(deadlineMillis, TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((path, failure) -> answer(exchange, maze, query, path, failure, received), requestThreads);
+        maze.submit(query);
+        return true;
+    }
+
+    private void answer(HttpExchange exchange, MazeService maze, Query query, int[] path, Throwable failure,
+                        long received) {
+        inFlight.decrementAndGet();
+        try {
+            if (failure instanceof CompletionException && failure.getCause() != null) {
+                failure = failure.getCause();
+            }
+            if (failure instanceof TimeoutException) {
+                long deadlineMillis = TimeUnit.NANOSECONDS.toMillis(query.deadline - received);
+                respond(exchange, 504, error("no answer within " + deadlineMillis + " ms"));
+                return;
+            }
+            if (failure != null) {
+                respond(exchange, 500, error(String.valueOf(failure)));
+                return;
+            }
+            MazeGrid grid = maze.solver.getGrid();
+            StringBuilder json = new StringBuilder();
+            json.append("{\"maze\":").append(quote(maze.id))
+                    .append(",\"algorithm\":").append(quote(query.algorithm))
+                    .append(",\"found\":").append(path != null)
+                    .append(",\"length\":").append(path == null ? -1 : path.length - 1)
+                    .append(",\"micros\":").append((System.nanoTime() - received) / 1000)
+                    .append(",\"path\":");
+            if (path == null) {
+                json.append("null");
+            } else {
+                json.append('[');
+                for (int i = 0; i < path.length; i++) {
+                    json.append(i == 0 ? "" : ",").append(cell(grid, path[i]));
+                }
+                json.append(']');
+            }
+            respond(exchange, 200, json.append('}').toString());
+        } catch (IOException e) {
+            // The client has gone; there is nobody left to answer
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized String listMazes() {
+        StringBuilder json = new StringBuilder("{\"mazes\":[");
+        boolean first = true;
+        for (MazeService maze : mazes.values()) {
+            json.append(first ? "" : ",").append(describe(maze));
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String describe(MazeService maze) {
+        MazeGrid grid = maze.solver.getGrid();
+        return "{\"id\":" + quote(maze.id)
+                + ",\"rows\":" + grid.getRows()
+                + ",\"columns\":" + grid.getColumns()
+                + ",\"start\":" + (grid.getStartCell() < 0 ? "null" : cell(grid, grid.getStartCell()))
+                + ",\"goal\":" + (grid.getGoalCell() < 0 ? "null" : cell(grid, grid.getGoalCell()))
+                + ",\"queries\":" + maze.queries.get()
+                + ",\"batches\":" + maze.batches.get()
+                + ",\"shared\":" + maze.shared.get()
+                + ",\"expired\":" + maze.expired.get() + "}";
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static int parseCell(MazeGrid grid, String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("expected row,col but got " + text);
+        }
+        int row = (int) parseNumber("row", parts[0].trim());
+        int col = (int) parseNumber("column", parts[1].trim());
+        if (row < 0 || row >= grid.getRows() || col < 0 || col >= grid.getColumns()) {
+            throw new IllegalArgumentException("cell " + text + " is outside the maze");
+        }
+        return grid.index(row, col);
+    }
+
+    private static long parseNumber(String name, String text) {
+        try {
+            long value = Long.parseLong(text);
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must not be negative: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number: " + text);
+        }
+    }
+
+    private static String cell(MazeGrid grid, int cell) {
+        return "[" + grid.row(cell) + "," + grid.col(cell) + "]";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicLong count = new AtomicLong();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
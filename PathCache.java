@@ -0,0 +1,248 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PathCache keeps solved paths so that repeated (start, goal) queries on the same maze are not searched again.
+ * Entries are keyed by the maze's size and content hash, the start and goal cells and the algorithm, so a changed
+ * maze never gets an old maze's path: its queries simply miss, and the stale entries age out. Since two mazes can
+ * still share a hash, a cached path is walked against the maze's walls before it is returned, which costs no more
+ * than copying it out; one that does not fit is dropped and the query searched afresh. Cached answers that there is
+ * no path cannot be checked that cheaply and are trusted.
+ *
+ * A path is stored as its start cell plus one 2-bit direction per step, four steps to a byte. Queries without a
+ * path are cached too. The least recently used entries are evicted once either the entry limit or the byte limit
+ * is exceeded. All methods are synchronized, so one cache can be shared by several solvers and threads.
+ */
+public class PathCache {
+    private static final int ENTRY_OVERHEAD = 64; // Rough bytes per entry besides the packed moves
+    private static final byte[] NO_MOVES = new byte[0];
+
+    /**
+     * Anything that can find a path between two cells, such as {@code AstarAlgorithm::findPath}.
+     */
+    public interface Solver {
+        int[] findPath(int startCell, int goalCell);
+    }
+
+    private static final class Key {
+        final long mazeHash;
+        final int rows;
+        final int columns;
+        final int startCell;
+        final int goalCell;
+        final String algorithm;
+
+        Key(MazeGrid grid, int startCell, int goalCell, String algorithm) {
+            this.mazeHash = grid.getContentHash();
+            this.rows = grid.getRows();
+            this.columns = grid.getColumns();
+            this.startCell = startCell;
+            this.goalCell = goalCell;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mazeHash == other.mazeHash && rows == other.rows && columns == other.columns
+                    && startCell == other.startCell && goalCell == other.goalCell && algorithm.equals(other.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(mazeHash);
+            h = 31 * h + rows;
+            h = 31 * h + columns;
+            h = 31 * h + startCell;
+            h = 31 * h + goalCell;
+            return 31 * h + algorithm.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final int steps;     // Number of moves, or -1 if there is no path
+        final byte[] moves;  // Direction of each move, 2 bits each, low bits first
+
+        Entry(int steps, byte[] moves) {
+            this.steps = steps;
+            this.moves = moves;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;      // Approximate memory held by the entries
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejected;   // Hits whose path did not fit the maze, which shared its hash with another
+
+    /**
+     * Constructor for PathCache class, limited by the number of entries only.
+     *
+     * @param maxEntries Largest number of paths kept.
+     */
+    public PathCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for PathCache class.
+     *
+     * @param maxEntries Largest number of paths kept.
+     * @param maxBytes   Approximate largest memory the paths may take.
+     */
+    public PathCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("cache limits must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached path for a query, or finds it with the solver and caches it.
+     *
+     * @param grid      The maze the query runs against.
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @param algorithm Name of the algorithm, part of the key because different algorithms may give different paths.
+     * @param solver    Finds the path on a miss.
+     * @return The path from start to goal, or null if there is none. The caller may modify the array.
+     */
+    public int[] solve(MazeGrid grid, int startCell, int goalCell, String algorithm, Solver solver) {
+        Key key = new Key(grid, startCell, goalCell, algorithm);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.steps < 0) {
+                    hits++;
+                    return null;
+                }
+                int[] path = unpack(grid, startCell, goalCell, entry);
+                if (path != null) {
+                    hits++;
+                    return path;
+                }
+                entries.remove(key);
+                bytes -= sizeOf(entry);
+                rejected++;
+            }
+            misses++;
+        }
+        // Searched outside the lock so that other threads can use the cache meanwhile
+        int[] path = solver.findPath(startCell, goalCell);
+        Entry entry = pack(grid, path);
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= sizeOf(previous);
+            }
+            bytes += sizeOf(entry);
+            evict();
+        }
+        return path;
+    }
+
+    /**
+     * Removes every entry that belongs to a maze, for callers that know the maze is gone for good.
+     */
+    public synchronized void invalidate(MazeGrid grid) {
+        long mazeHash = grid.getContentHash();
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> next = iterator.next();
+            Key key = next.getKey();
+            if (key.mazeHash == mazeHash && key.rows == grid.getRows() && key.columns == grid.getColumns()) {
+                bytes -= sizeOf(next.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of cached paths that were found not to fit the maze they were looked up for.
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the approximate memory held by the cached paths, in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            bytes -= sizeOf(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(Entry entry) {
+        return ENTRY_OVERHEAD + entry.moves.length;
+    }
+
+    private static Entry pack(MazeGrid grid, int[] path) {
+        if (path == null) {
+            return new Entry(-1, NO_MOVES);
+        }
+        int steps = path.length - 1;
+        byte[] moves = new byte[(steps + 3) >>> 2];
+        for (int i = 0; i < steps; i++) {
+            moves[i >>> 2] |= (byte) (grid.direction(path[i], path[i + 1]) << ((i & 3) << 1));
+        }
+        return new Entry(steps, moves);
+    }
+
+    /**
+     * Rebuilds a cached path, checking every move against the maze's open neighbours.
+     *
+     * @return The path, or null if it leaves the open cells or does not end at the goal.
+     */
+    private static int[] unpack(MazeGrid grid, int startCell, int goalCell, Entry entry) {
+        if (startCell < 0 || startCell >= grid.getCellCount() || grid.isWall(startCell)) {
+            return null;
+        }
+        int[] path = new int[entry.steps + 1];
+        path[0] = startCell;
+        for (int i = 0; i < entry.steps; i++) {
+            int direction = (entry.moves[i >>> 2] >>> ((i & 3) << 1)) & 0x03;
+            if (!grid.hasNeighbor(path[i], direction)) {
+                return null;
+            }
+            path[i + 1] = grid.neighbor(path[i], direction);
+        }
+        return path[entry.steps] == goalCell ? path : null;
+    }
+}
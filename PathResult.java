@@ -0,0 +1,72 @@
+/**
+ * PathResult is the answer to one query: the path as a primitive array of cell indices plus a few numbers about the
+ * search that found it. Solvers return it without printing anything; use PathWriter to output it.
+ */
+public final class PathResult {
+    private static final int[] NO_CELLS = new int[0];
+
+    private final String algorithm;  // Name of the solver that produced the result
+    private final int startCell;
+    private final int goalCell;
+    private final int[] path;        // Cells from start to goal, or empty if no path was found
+    private final int expanded;      // Cells the solver expanded (for ACO, cells walked by all ants)
+    private final long elapsedNanos; // Time the solver took
+
+    /**
+     * Constructor for PathResult class.
+     *
+     * @param algorithm    Name of the solver that produced the result.
+     * @param startCell    Cell index of the start position.
+     * @param goalCell     Cell index of the goal position.
+     * @param path         Cells from start to goal, or null if no path was found. The array is taken over, not copied.
+     * @param expanded     Cells the solver expanded.
+     * @param elapsedNanos Time the solver took.
+     */
+    public PathResult(String algorithm, int startCell, int goalCell, int[] path, int expanded, long elapsedNanos) {
+        this.algorithm = algorithm;
+        this.startCell = startCell;
+        this.goalCell = goalCell;
+        this.path = path == null ? NO_CELLS : path;
+        this.expanded = expanded;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getStartCell() {
+        return startCell;
+    }
+
+    public int getGoalCell() {
+        return goalCell;
+    }
+
+    public boolean isFound() {
+        return path.length > 0;
+    }
+
+    /**
+     * Returns the cells of the path from start to goal, or an empty array if no path was found.
+     * The array is not copied, so it must not be modified.
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of steps in the path, or -1 if no path was found.
+     */
+    public int getLength() {
+        return path.length - 1;
+    }
+
+    public int getExpanded() {
+        return expanded;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PathWriter writes paths as "(row,col) -> (row,col) -> ..." lines to a file or the console.
+ * Cells are formatted straight into a byte buffer that is flushed whenever it fills, so a path with millions
+ * of steps is streamed out in fixed memory instead of first being built into one String.
+ */
+public class PathWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_CELL_TEXT = 32; // "(row,col) -> " for any two ints fits in this many bytes
+    private static final byte[] ARROW = {' ', '-', '>', ' '};
+
+    private final OutputStream out;
+    private final boolean closeStream; // False for the console, which must stay open
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;                 // Bytes waiting in the buffer
+
+    /**
+     * Constructor for PathWriter class. Closing the writer closes the stream.
+     *
+     * @param out The stream to write to. It need not be buffered.
+     */
+    public PathWriter(OutputStream out) {
+        this(out, true);
+    }
+
+    private PathWriter(OutputStream out, boolean closeStream) {
+        this.out = out;
+        this.closeStream = closeStream;
+    }
+
+    /**
+     * Returns a writer to a new file, or to an existing file it overwrites.
+     */
+    public static PathWriter toFile(Path file) throws IOException {
+        return new PathWriter(Files.newOutputStream(file));
+    }
+
+    /**
+     * Returns a writer to standard output. Closing it only flushes it.
+     */
+    public static PathWriter toConsole() {
+        return new PathWriter(System.out, false);
+    }
+
+    /**
+     * Prints a path to standard output, or a message if there is none. This is what the solvers' search methods use.
+     *
+     * @param label  Text written before the path.
+     * @param grid   The maze the path runs through.
+     * @param path   Cells of the path, or null.
+     * @param noPath Line written instead when path is null.
+     */
+    public static void print(String label, MazeGrid grid, int[] path, String noPath) {
+        try (PathWriter writer = toConsole()) {
+            if (path == null) {
+                writer.writeLine(noPath);
+            } else {
+                writer.writePath(label, grid, path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a path on one line.
+     *
+     * @param label Text written before the path.
+     * @param grid  The maze the path runs through.
+     * @param path  Cells of the path, from start to goal.
+     */
+    public void writePath(String label, MazeGrid grid, int[] path) throws IOException {
+        writeText(label);
+        for (int i = 0; i < path.length; i++) {
+            writeCell(i == 0, grid.row(path[i]), grid.col(path[i]));
+        }
+        newLine();
+    }
+
+    /**
+     * Writes a path through a tiled maze on one line.
+     *
+     * @param label Text written before the path.
+     * @param store The maze the path runs through.
+     * @param path  Cells of the path, from start to goal.
+     */
+    public void writePath(String label, TiledMazeStore store, long[] path) throws IOException {
+        writeText(label);
+        for (int i = 0; i < path.length; i++) {
+            writeCell(i == 0, store.row(path[i]), store.col(path[i]));
+        }
+        newLine();
+    }
+
+    /**
+     * Writes a result: its path, or "No path exists" if it has none.
+     *
+     * @param label  Text written before the path.
+     * @param grid   The maze the path runs through.
+     * @param result The result of a query.
+     */
+    public void writeResult(String label, MazeGrid grid, PathResult result) throws IOException {
+        if (result.isFound()) {
+            writePath(label, grid, result.getPath());
+        } else {
+            writeLine("No path exists");
+        }
+    }
+
+    public void writeLine(String text) throws IOException {
+        writeText(text);
+        newLine();
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (closeStream) {
+            out.close();
+        }
+    }
+
+    private void writeText(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            char c = text.charAt(i);
+            buffer[count++] = (byte) (c < 0x80 ? c : '?');
+        }
+    }
+
+    private void writeCell(boolean first, int row, int col) throws IOException {
+        if (count + MAX_CELL_TEXT > buffer.length) {
+            flushBuffer();
+        }
+        if (!first) {
+            System.arraycopy(ARROW, 0, buffer, count, ARROW.length);
+            count += ARROW.length;
+        }
+        buffer[count++] = '(';
+        putInt(row);
+        buffer[count++] = ',';
+        putInt(col);
+        buffer[count++] = ')';
+    }
+
+    private void newLine() throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = '\n';
+    }
+
+    private void putInt(int value) {
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
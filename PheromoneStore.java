@@ -0,0 +1,214 @@
+import java.util.Arrays;
+
+/**
+ * PheromoneStore holds the pheromone level of every edge between two adjacent cells of the maze.
+ * Each cell has at most four neighbours, so the levels are kept in a flat array indexed by (cell, direction),
+ * which keeps the memory footprint linear in the number of cells.
+ */
+public class PheromoneStore {
+    private static final int DIRECTIONS = MazeGrid.DIRECTIONS;
+
+    private final MazeGrid grid;    // The maze the edges belong to
+    private final double[] levels;  // Pheromone level of each (cell, direction) edge
+    private final int[] openEdges;  // Slots of the edges that join two open cells
+    private final double initialLevel; // Pheromone level every open edge starts with
+    private double minLevel = 0;       // Lower bound on the level of an open edge
+    private double maxLevel = Double.POSITIVE_INFINITY; // Upper bound on the level of an open edge
+
+    /**
+     * Constructor for PheromoneStore class.
+     * Sets pheromone levels to the initial value for edges between two open cells, and 0 for edges touching a wall.
+     *
+     * @param grid         The maze.
+     * @param initialLevel Pheromone level given to every open edge.
+     */
+    public PheromoneStore(MazeGrid grid, double initialLevel) {
+        this.grid = grid;
+        this.initialLevel = initialLevel;
+        int cells = grid.getCellCount();
+        levels = new double[cells * DIRECTIONS];
+        int[] edges = new int[cells * DIRECTIONS];
+        int count = 0;
+
+        for (int cell = 0; cell < cells; cell++) {
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                if (grid.hasNeighbor(cell, direction)) {
+                    int slot = cell * DIRECTIONS + direction;
+                    levels[slot] = initialLevel;
+                    edges[count++] = slot;
+                }
+            }
+        }
+        openEdges = Arrays.copyOf(edges, count);
+    }
+
+    /**
+     * Sets the bounds of MAX-MIN Ant System: the level of every open edge is kept between them after each update,
+     * so no edge becomes so attractive or so unattractive that the colony stops exploring. The initial level is
+     * clamped to the bounds too, at the next {@link #reset()}.
+     *
+     * @param minLevel Lowest level an open edge may fall to.
+     * @param maxLevel Highest level an open edge may rise to.
+     */
+    public void setBounds(double minLevel, double maxLevel) {
+        if (minLevel < 0 || minLevel > maxLevel) {
+            throw new IllegalArgumentException("invalid pheromone bounds " + minLevel + ", " + maxLevel);
+        }
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Sets every open edge back to the initial level, so the store can be reused for another query.
+     */
+    public void reset() {
+        double level = clamp(initialLevel);
+        for (int i = 0; i < openEdges.length; i++) {
+            levels[openEdges[i]] = level;
+        }
+    }
+
+    private double clamp(double level) {
+        return Math.min(maxLevel, Math.max(minLevel, level));
+    }
+
+    /**
+     * Returns the pheromone level on the edge leaving a cell in the given direction.
+     */
+    public double level(int cell, int direction) {
+        return levels[cell * DIRECTIONS + direction];
+    }
+
+    /**
+     * Returns the pheromone level on the edge between two adjacent cells.
+     */
+    public double levelBetween(int fromCell, int toCell) {
+        return level(fromCell, grid.direction(fromCell, toCell));
+    }
+
+    /**
+     * Deposits pheromone on the edge between two adjacent cells, in both directions.
+     *
+     * @param fromCell The index of the first cell.
+     * @param toCell   The index of the adjacent cell.
+     * @param amount   The amount of pheromone to add.
+     */
+    public void deposit(int fromCell, int toCell, double amount) {
+        deposit(levels, fromCell, toCell, amount);
+    }
+
+    /**
+     * Returns a zeroed buffer shaped like this store, in which a worker thread can accumulate deposits privately.
+     */
+    public double[] newDepositBuffer() {
+        return new double[levels.length];
+    }
+
+    /**
+     * Deposits pheromone on the edge between two adjacent cells, in both directions, into a private buffer.
+     * The buffer is added to the store later by {@link #mergeDeposits}.
+     *
+     * @param buffer   A buffer returned by {@link #newDepositBuffer()}.
+     * @param fromCell The index of the first cell.
+     * @param toCell   The index of the adjacent cell.
+     * @param amount   The amount of pheromone to add.
+     */
+    public void deposit(double[] buffer, int fromCell, int toCell, double amount) {
+        int direction = grid.direction(fromCell, toCell);
+        buffer[fromCell * DIRECTIONS + direction] += amount;
+        buffer[toCell * DIRECTIONS + MazeGrid.opposite(direction)] += amount;
+    }
+
+    /**
+     * Returns the number of edges joining two open cells.
+     */
+    public int openEdgeCount() {
+        return openEdges.length;
+    }
+
+    /**
+     * Adds the deposit buffers to the store for a range of open edges, keeps the result within the bounds,
+     * and clears the buffers for reuse.
+     * Disjoint ranges touch disjoint slots, so they can be merged by different threads without locking.
+     * The buffers are summed in array order, which keeps the result independent of thread scheduling.
+     *
+     * @param buffers   Buffers returned by {@link #newDepositBuffer()}.
+     * @param fromEdge  First open edge of the range (inclusive).
+     * @param toEdge    Last open edge of the range (exclusive).
+     */
+    public void mergeDeposits(double[][] buffers, int fromEdge, int toEdge) {
+        for (int i = fromEdge; i < toEdge; i++) {
+            int slot = openEdges[i];
+            double sum = levels[slot];
+            for (double[] buffer : buffers) {
+                sum += buffer[slot];
+                buffer[slot] = 0;
+            }
+            levels[slot] = clamp(sum);
+        }
+    }
+
+    /**
+     * Copies the level of every open edge, in a fixed order, so that it can be sent to another store of the same
+     * maze and blended in there.
+     *
+     * @param into An array of at least {@link #openEdgeCount()} entries, or null to allocate one.
+     * @return The array holding the levels.
+     */
+    public double[] copyLevels(double[] into) {
+        double[] copy = into != null ? into : new double[openEdges.length];
+        for (int i = 0; i < openEdges.length; i++) {
+            copy[i] = levels[openEdges[i]];
+        }
+        return copy;
+    }
+
+    /**
+     * Moves the level of every open edge part of the way towards the levels of another store of the same maze,
+     * and keeps the result within the bounds.
+     *
+     * @param other  Levels returned by {@link #copyLevels} of the other store.
+     * @param weight Share of the other store's level in the result, between 0 (keep this store's) and 1.
+     */
+    public void blend(double[] other, double weight) {
+        double keep = 1 - weight;
+        for (int i = 0; i < openEdges.length; i++) {
+            int slot = openEdges[i];
+            levels[slot] = clamp(keep * levels[slot] + weight * other[i]);
+        }
+    }
+
+    /**
+     * Returns the Shannon entropy of the pheromone spread over the open edges, divided by its maximum so that 1 means
+     * every edge holds the same level and values near 0 mean the pheromone has converged onto a few edges.
+     */
+    public double entropy() {
+        double total = 0;
+        for (int i = 0; i < openEdges.length; i++) {
+            total += levels[openEdges[i]];
+        }
+        if (openEdges.length < 2 || total <= 0) {
+            return 0;
+        }
+        double entropy = 0;
+        for (int i = 0; i < openEdges.length; i++) {
+            double p = levels[openEdges[i]] / total;
+            if (p > 0) {
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(openEdges.length);
+    }
+
+    /**
+     * Evaporates pheromone from every open edge in a single pass.
+     *
+     * @param evaporationRate The fraction of pheromone that evaporates.
+     */
+    public void evaporate(double evaporationRate) {
+        double keep = 1 - evaporationRate;
+        for (int i = 0; i < openEdges.length; i++) {
+            levels[openEdges[i]] *= keep;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded for every search when flight recording is on, with the same numbers as SearchMetrics.
+ * Enable it with -XX:StartFlightRecording and look for maze.Search in the recording.
+ */
+@Name("maze.Search")
+@Label("Maze Search")
+@Category("Maze")
+@Description("One path search by a maze solver")
+class SearchEvent extends Event {
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Expanded")
+    int expanded;
+
+    @Label("Peak Open List Size")
+    int peakOpenSize;
+
+    @Label("Reopened")
+    int reopened;
+
+    @Label("Path Length")
+    int pathLength;
+
+    @Label("Setup")
+    @Timespan(Timespan.NANOSECONDS)
+    long setupNanos;
+
+    @Label("Search")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchNanos;
+
+    @Label("Reconstruct")
+    @Timespan(Timespan.NANOSECONDS)
+    long reconstructNanos;
+
+    /**
+     * Copies the metrics of a finished search into the event and commits it, if the event is enabled.
+     */
+    void finish(String algorithm, SearchMetrics metrics) {
+        end();
+        if (shouldCommit()) {
+            this.algorithm = algorithm;
+            expanded = metrics.expanded;
+            peakOpenSize = metrics.peakOpenSize;
+            reopened = metrics.reopened;
+            pathLength = metrics.pathLength;
+            setupNanos = metrics.setupNanos;
+            searchNanos = metrics.searchNanos;
+            reconstructNanos = metrics.reconstructNanos;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * SearchMetrics holds the counters and phase timings of one search. A solver keeps one instance and fills it in
+ * again on every search, so read it before starting the next search.
+ */
+public class SearchMetrics {
+    long setupNanos;        // Resetting the per-search state and seeding the open list
+    long searchNanos;       // The main loop
+    long reconstructNanos;  // Walking back from the goal to build the path
+    int expanded;           // Cells taken off the open list and expanded
+    int peakOpenSize;       // Largest size of the open list
+    int reopened;           // Open cells whose cost was lowered by a shorter route
+    int pathLength = -1;    // Steps in the path found, or -1 if none
+
+    void reset() {
+        setupNanos = 0;
+        searchNanos = 0;
+        reconstructNanos = 0;
+        expanded = 0;
+        peakOpenSize = 0;
+        reopened = 0;
+        pathLength = -1;
+    }
+
+    public long getSetupNanos() {
+        return setupNanos;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    public long getReconstructNanos() {
+        return reconstructNanos;
+    }
+
+    public long getTotalNanos() {
+        return setupNanos + searchNanos + reconstructNanos;
+    }
+
+    public int getExpanded() {
+        return expanded;
+    }
+
+    public int getPeakOpenSize() {
+        return peakOpenSize;
+    }
+
+    public int getReopened() {
+        return reopened;
+    }
+
+    /**
+     * Returns the number of steps in the path found, or -1 if none was found.
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    @Override
+    public String toString() {
+        return "expanded=" + expanded + " peakOpen=" + peakOpenSize + " reopened=" + reopened
+                + " pathLength=" + pathLength + " setup=" + setupNanos + "ns search=" + searchNanos
+                + "ns reconstruct=" + reconstructNanos + "ns";
+    }
+}
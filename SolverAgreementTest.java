@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SolverAgreementTest checks the shortest-path solvers against AstarAlgorithm. On every MazeGenerator family, at
+ * widths on both sides of a 64-cell word, it runs the maze's own query and random ones (some from or to a wall, some
+ * from a cell to itself) through each solver. Every path returned must be a walk between open neighbours from the
+ * start to the goal, and a solver must find a path exactly when A* does, of the same length. HPA* only promises
+ * near-optimal paths, so its paths may be longer but never shorter. D* Lite is also checked while cells are toggled
+ * and the start moves along the path, against a fresh A* on the edited maze. Finally, a new AstarAlgorithm is built
+ * for each of many queries on a large maze, and the heap they leave behind must not grow with their number.
+ *
+ * java SolverAgreementTest [queries-per-maze]
+ *
+ * Prints each disagreement and exits with status 1 if there was any.
+ */
+public final class SolverAgreementTest {
+    private static final int[][] SIZES = {{37, 53}, {70, 131}};
+    private static final double[] DENSITIES = {0.15, 0.4};
+    private static final int HDA_THREADS = 3;
+    private static final int CHURN_SIDE = 500;      // Rows and columns of the maze solvers are thrown away on
+    private static final int CHURN_SOLVERS = 40;
+
+    private final int queries;
+    private final List<String> failures = new ArrayList<>();
+    private int checked;
+
+    private SolverAgreementTest(int queries) {
+        this.queries = queries;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SolverAgreementTest test = new SolverAgreementTest(args.length > 0 ? Integer.parseInt(args[0]) : 60);
+        test.run();
+        for (String failure : test.failures) {
+            System.out.println("FAIL " + failure);
+        }
+        System.out.println(test.checked + " paths checked, " + test.failures.size() + " failures");
+        if (!test.failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private void run() throws IOException {
+        for (String family : MazeGenerator.FAMILIES) {
+            // Density only shapes the random layout
+            double[] densities = family.equals("random") ? DENSITIES : new double[]{DENSITIES[0]};
+            for (double density : densities) {
+                for (int[] size : SIZES) {
+                    MazeGrid grid = MazeGenerator.generate(family, size[0], size[1], density, size[0] * 31L + size[1]);
+                    String maze = family + " " + size[0] + "x" + size[1] + (family.equals("random") ? " " + density : "");
+                    checkSolvers(maze, grid);
+                    checkDStarLiteEdits(maze, grid);
+                }
+            }
+        }
+        checkSolverChurn();
+    }
+
+    /**
+     * Builds a new A* solver for every query, as callers that do not keep one do, and checks that the buffers of
+     * the solvers thrown away are freed. Each holds several arrays the size of the maze on the thread it ran on.
+     * Thread-local entries of dead solvers are only purged now and then, so a few may linger; what is checked is
+     * that twice as many solvers leave no more behind than half as many.
+     */
+    private void checkSolverChurn() {
+        MazeGrid grid = MazeGenerator.generate("open", CHURN_SIDE, CHURN_SIDE, 0, 1);
+        Runtime runtime = Runtime.getRuntime();
+        long[] used = new long[3];
+        try {
+            used[0] = usedMemory(runtime);
+            for (int round = 1; round < used.length; round++) {
+                for (int i = 0; i < CHURN_SOLVERS; i++) {
+                    new AstarAlgorithm(grid).findPath(grid.getStartCell(), grid.getGoalCell());
+                }
+                used[round] = usedMemory(runtime);
+            }
+        } catch (OutOfMemoryError e) {
+            failures.add("astar solvers built one per query ran out of memory");
+            return;
+        }
+        checked++;
+        // Cost, parent and stamp arrays, states and the heap's three arrays: about 25 bytes a cell
+        long perSolver = 25L * grid.getCellCount();
+        if (used[2] - used[1] > 2 * perSolver) {
+            failures.add("astar solvers built one per query grew the heap from " + (used[1] - used[0]) / 1_000_000
+                    + " MB after " + CHURN_SOLVERS + " to " + (used[2] - used[0]) / 1_000_000 + " MB after "
+                    + 2 * CHURN_SOLVERS + ", about " + perSolver / 1_000_000 + " MB a solver");
+        }
+    }
+
+    private static long usedMemory(Runtime runtime) {
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs the maze's own query and random ones through every solver.
+     */
+    private void checkSolvers(String maze, MazeGrid grid) throws IOException {
+        Random random = new Random(grid.getContentHash());
+        int[][] pairs = new int[queries + 1][];
+        pairs[0] = new int[]{grid.getStartCell(), grid.getGoalCell()};
+        for (int i = 1; i <= queries; i++) {
+            int startCell = random.nextInt(grid.getCellCount());
+            pairs[i] = new int[]{startCell, i % 10 == 0 ? startCell : random.nextInt(grid.getCellCount())};
+        }
+
+        AstarAlgorithm astar = new AstarAlgorithm(grid);
+        JumpPointSearch jps = new JumpPointSearch(grid);
+        HierarchicalPathfinder hpa = new HierarchicalPathfinder(grid, 16);
+        BidirectionalAstar bidirectional = new BidirectionalAstar(grid);
+        BidirectionalAstar concurrent = new BidirectionalAstar(grid);
+        concurrent.setConcurrent(true);
+        HashDistributedAstar hda = new HashDistributedAstar(grid, HDA_THREADS);
+        BitParallelBfs bfs = new BitParallelBfs(grid);
+        BitParallelBfs parallelBfs = new BitParallelBfs(grid);
+        parallelBfs.setParallel(true);
+        DStarLite dstar = new DStarLite(grid);
+        Path file = Files.createTempFile("agreement", ".tiles");
+        try {
+            TiledMazeStore.write(grid, file, 16);
+            try (TiledMazeStore store = TiledMazeStore.open(file, 4);
+                 TiledAstar tiled = new TiledAstar(store, 256)) {
+                for (int[] pair : pairs) {
+                    int startCell = pair[0];
+                    int goalCell = pair[1];
+                    int[] expected = astar.findPath(startCell, goalCell);
+                    String query = maze + " from " + cell(grid, startCell) + " to " + cell(grid, goalCell);
+                    check("jps", query, grid, pair, expected, jps.findPath(startCell, goalCell), false);
+                    check("hpa", query, grid, pair, expected, hpa.findPath(startCell, goalCell), true);
+                    check("bidir", query, grid, pair, expected, bidirectional.findPath(startCell, goalCell), false);
+                    check("bidir-threads", query, grid, pair, expected, concurrent.findPath(startCell, goalCell), false);
+                    check("hda", query, grid, pair, expected, hda.findPath(startCell, goalCell), false);
+                    check("bfs", query, grid, pair, expected, bfs.findPath(startCell, goalCell), false);
+                    check("bfs-parallel", query, grid, pair, expected, parallelBfs.findPath(startCell, goalCell), false);
+                    dstar.moveGoal(goalCell);
+                    dstar.moveStart(startCell);
+                    check("dstar", query, grid, pair, expected, dstar.findPath(), false);
+                    check("tiled", query, grid, pair, expected, toCells(grid, store,
+                            tiled.findPath(tiledCell(grid, store, startCell), tiledCell(grid, store, goalCell))), false);
+                }
+            }
+        } finally {
+            bidirectional.shutdown();
+            concurrent.shutdown();
+            hda.shutdown();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Toggles random cells while the start walks along D* Lite's path, comparing each repaired path with A*.
+     */
+    private void checkDStarLiteEdits(String maze, MazeGrid grid) {
+        int startCell = grid.getStartCell();
+        int goalCell = grid.getGoalCell();
+        if (startCell < 0 || goalCell < 0) {
+            return;
+        }
+        Random random = new Random(grid.getContentHash() + 1);
+        DStarLite dstar = new DStarLite(grid);
+        dstar.moveGoal(goalCell);
+        dstar.moveStart(startCell);
+        MazeGrid edited = grid;
+        for (int step = 0; step < queries; step++) {
+            int[] path = dstar.findPath();
+            int[] expected = new AstarAlgorithm(edited).findPath(startCell, goalCell);
+            String query = maze + " after " + step + " edits from " + cell(grid, startCell);
+            check("dstar-edits", query, edited, new int[]{startCell, goalCell}, expected, path, false);
+            if (path != null && path.length > 1) {
+                startCell = path[1];
+                dstar.moveStart(startCell);
+            }
+            int cell = random.nextInt(edited.getCellCount());
+            if (cell != startCell && cell != goalCell) {
+                int type = edited.isWall(cell) ? MazeGrid.OPEN : MazeGrid.WALL;
+                edited = edited.withCell(cell, type);
+                dstar.setCell(cell, type);
+            }
+        }
+    }
+
+    /**
+     * Records a failure if a path is not a walk from start to goal between open neighbours, or if its length differs
+     * from A*'s, or for a near-optimal solver, is shorter.
+     */
+    private void check(String solver, String query, MazeGrid grid, int[] pair, int[] expected, int[] path,
+                       boolean nearOptimal) {
+        checked++;
+        int expectedLength = expected == null ? -1 : expected.length - 1;
+        int length = path == null ? -1 : path.length - 1;
+        if ((path == null) != (expected == null)) {
+            failures.add(solver + " " + query + ": length " + length + ", A* found " + expectedLength);
+            return;
+        }
+        if (path == null) {
+            return;
+        }
+        if (nearOptimal ? length < expectedLength : length != expectedLength) {
+            failures.add(solver + " " + query + ": length " + length + ", A* found " + expectedLength);
+        }
+        if (path[0] != pair[0] || path[path.length - 1] != pair[1]) {
+            failures.add(solver + " " + query + ": path runs from " + cell(grid, path[0])
+                    + " to " + cell(grid, path[path.length - 1]));
+            return;
+        }
+        for (int i = 0; i < path.length; i++) {
+            if (grid.isWall(path[i]) || i > 0 && grid.manhattan(path[i - 1], path[i]) != 1) {
+                failures.add(solver + " " + query + ": step " + i + " to " + cell(grid, path[i])
+                        + " is not an open neighbour");
+                return;
+            }
+        }
+    }
+
+    private static long tiledCell(MazeGrid grid, TiledMazeStore store, int cell) {
+        return cell < 0 ? -1 : store.index(grid.row(cell), grid.col(cell));
+    }
+
+    private static int[] toCells(MazeGrid grid, TiledMazeStore store, long[] path) {
+        if (path == null) {
+            return null;
+        }
+        int[] cells = new int[path.length];
+        for (int i = 0; i < path.length; i++) {
+            cells[i] = grid.index(store.row(path[i]), store.col(path[i]));
+        }
+        return cells;
+    }
+
+    private static String cell(MazeGrid grid, int cell) {
+        return cell < 0 ? "none" : "(" + grid.row(cell) + "," + grid.col(cell) + ")";
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TiledAstar finds shortest paths with A* on a maze in a TiledMazeStore, for mazes too large for the heap. Nothing
+ * is allocated per cell of the maze: the cost and parent of each cell the search reaches are kept in a
+ * CellStateTable, which moves off the heap when the search grows large, and the maze is read tile by tile.
+ *
+ * The parent of a cell is stored as the direction back to it, in two bits. The open list relies on a property of
+ * the Manhattan heuristic on a 4-connected grid: a step changes h by exactly one, so a neighbour's f is either the
+ * f of the cell expanded or two more. The open list is therefore just two stacks, for the lowest f and the next,
+ * and each spills its older half to a file when it gets large. Taking the most recently opened cell first among
+ * equal f makes the search run on towards the goal instead of filling the whole area where f is at its minimum.
+ */
+public class TiledAstar implements Closeable {
+    public static final long DEFAULT_HEAP_SLOTS = 1L << 22; // State slots kept on the heap: 64 MiB
+    // Flags of a cell in the state table
+    private static final int PARENT_DIRECTION = 0x03;  // Direction from the cell back to its parent
+    private static final int CLOSED = 1 << 2;
+
+    private final TiledMazeStore store;
+    private final CellStateTable states;
+    // Open list: cells whose f is the lowest, and cells whose f is two more. A cell is pushed again when its cost
+    // drops, and entries that no longer match the cell's cost are skipped when they come out.
+    private SpillingStack current = new SpillingStack();
+    private SpillingStack next = new SpillingStack();
+    private long expanded;       // Cells expanded by the last search
+
+    /**
+     * A stack of cells that keeps at most one chunk on the heap. When the chunk fills, its older half is written to
+     * a temporary file, and when it empties the most recently written half is read back, so pushes and pops that
+     * go back and forth across a chunk boundary do not each cost a write.
+     */
+    private static final class SpillingStack implements Closeable {
+        private static final int CHUNK = 1 << 20;  // Cells kept on the heap: 8 MiB
+        private static final int HALF = CHUNK / 2;
+
+        private final long[] cells = new long[CHUNK];
+        private int size;           // Cells on the heap
+        private long spilled;       // Cells in the file
+        private FileChannel channel;
+        private ByteBuffer io;      // Off-heap buffer for one half-chunk
+
+        boolean isEmpty() {
+            return size == 0 && spilled == 0;
+        }
+
+        void push(long cell) {
+            if (size == CHUNK) {
+                spill();
+            }
+            cells[size++] = cell;
+        }
+
+        long pop() {
+            if (size == 0) {
+                unspill();
+            }
+            return cells[--size];
+        }
+
+        void clear() {
+            size = 0;
+            spilled = 0;
+        }
+
+        private void spill() {
+            try {
+                if (channel == null) {
+                    Path file = Files.createTempFile("maze-open-", ".cells");
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE);
+                    io = ByteBuffer.allocateDirect(HALF * Long.BYTES).order(ByteOrder.nativeOrder());
+                }
+                io.clear();
+                io.asLongBuffer().put(cells, 0, HALF);
+                long position = spilled * Long.BYTES;
+                while (io.hasRemaining()) {
+                    position += channel.write(io, position);
+                }
+                spilled += HALF;
+                System.arraycopy(cells, HALF, cells, 0, size - HALF);
+                size -= HALF;
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot spill the open list to disk", e);
+            }
+        }
+
+        private void unspill() {
+            try {
+                spilled -= HALF;
+                io.clear();
+                long position = spilled * Long.BYTES;
+                while (io.hasRemaining()) {
+                    int read = channel.read(io, position);
+                    if (read < 0) {
+                        throw new IOException("open list file is truncated");
+                    }
+                    position += read;
+                }
+                io.flip();
+                io.asLongBuffer().get(cells, 0, HALF);
+                size = HALF;
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot read the open list back from disk", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // The file is deleted on close; nothing is lost if that fails
+                }
+                channel = null;
+                io = null;
+            }
+        }
+    }
+
+    public TiledAstar(TiledMazeStore store) {
+        this(store, DEFAULT_HEAP_SLOTS);
+    }
+
+    /**
+     * Constructor for TiledAstar class.
+     *
+     * @param store     The maze.
+     * @param heapSlots Largest number of cell state slots kept on the heap before they move off it.
+     */
+    public TiledAstar(TiledMazeStore store, long heapSlots) {
+        this.store = store;
+        this.states = new CellStateTable(heapSlots);
+    }
+
+    /**
+     * Returns the number of cells the last search expanded.
+     */
+    public long getExpandedCount() {
+        return expanded;
+    }
+
+    /**
+     * Returns true if the cell states of the last search moved off the heap.
+     */
+    public boolean isSpilled() {
+        return states.isSpilled();
+    }
+
+    /**
+     * Searches for a path between the start and goal cells of the maze and prints it.
+     */
+    public void search() {
+        long[] path = findPath(store.getStartCell(), store.getGoalCell());
+        try (PathWriter writer = PathWriter.toConsole()) {
+            if (path == null) {
+                writer.writeLine("No path exists");
+            } else {
+                writer.writePath("output using tiled A star: ", store, path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Searches for a shortest path between two cells.
+     *
+     * @param startCell Cell index of the start position.
+     * @param goalCell  Cell index of the goal position.
+     * @return The path from start to goal, one cell per step, or null if there is none.
+     */
+    public long[] findPath(long startCell, long goalCell) {
+        expanded = 0;
+        if (startCell < 0 || goalCell < 0 || store.isWall(startCell) || store.isWall(goalCell)) {
+            return null;
+        }
+        states.clear();
+        current.clear();
+        next.clear();
+        states.insert(startCell, 0);
+        int f = store.manhattan(startCell, goalCell);
+        current.push(startCell);
+        while (true) {
+            if (current.isEmpty()) {
+                if (next.isEmpty()) {
+                    return null;
+                }
+                SpillingStack emptied = current;
+                current = next;
+                next = emptied;
+                f += 2;
+            }
+            long cell = current.pop();
+            long slot = states.find(cell);
+            int flags = states.getFlags(slot);
+            int g = states.getCost(slot);
+            if ((flags & CLOSED) != 0 || g + store.manhattan(cell, goalCell) != f) {
+                continue;
+            }
+            if (cell == goalCell) {
+                return backtrack(startCell, goalCell, g);
+            }
+            states.setFlags(slot, flags | CLOSED);
+            expanded++;
+            int mask = store.getNeighborMask(cell);
+            for (int direction = 0; direction < MazeGrid.DIRECTIONS; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    openNode(store.neighbor(cell, direction), g + 1, MazeGrid.opposite(direction), f, goalCell);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the files the open list spilled to, if any. The maze store stays open.
+     */
+    @Override
+    public void close() {
+        current.close();
+        next.close();
+    }
+
+    private void openNode(long cell, int newG, int backDirection, int f, long goalCell) {
+        long slot = states.find(cell);
+        if (slot < 0) {
+            slot = states.insert(cell, newG);
+        } else if ((states.getFlags(slot) & CLOSED) != 0 || states.getCost(slot) <= newG) {
+            return;
+        }
+        states.setCost(slot, newG);
+        states.setFlags(slot, backDirection);
+        // f stays the same when the step goes towards the goal and grows by two when it goes away
+        if (newG + store.manhattan(cell, goalCell) == f) {
+            current.push(cell);
+        } else {
+            next.push(cell);
+        }
+    }
+
+    private long[] backtrack(long startCell, long goalCell, int length) {
+        long[] path = new long[length + 1];
+        long cell = goalCell;
+        for (int i = length; i > 0; i--) {
+            path[i] = cell;
+            cell = store.neighbor(cell, states.getFlags(states.find(cell)) & PARENT_DIRECTION);
+        }
+        path[0] = startCell;
+        return path;
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TiledMazeStore gives access to a maze kept in a file instead of on the heap, for mazes too large for a MazeGrid.
+ * The file holds the maze in square tiles, one byte per cell in the same layout as MazeGrid (open-neighbour mask in
+ * the low four bits, type in the next two). The file is memory-mapped in windows of about 1 GiB, each mapped the
+ * first time a tile in it is needed, and a tile is copied out of its window the first time a cell in it is read.
+ * Only the most recently used tiles are kept, so the heap holds a fixed number of tiles whatever the maze size, and
+ * the operating system reads in only the parts of the file around the cells a search visits.
+ *
+ * Cells are addressed like MazeGrid's, row * columns + col, but as longs, since a large maze has more cells than
+ * an int can count. The neighbour methods mirror MazeGrid's. A store is not safe for use by several threads.
+ *
+ * File layout: the magic bytes "MAZT", rows, columns and tile size as big-endian ints, the start and goal cells as
+ * big-endian longs (-1 if absent), then the tiles row by row. Tiles on the bottom and right edges are padded to full
+ * size with walls, so every tile has the same length.
+ */
+public class TiledMazeStore implements Closeable {
+    public static final int DEFAULT_TILE_SIZE = 512;
+    private static final byte[] TILED_MAGIC = {'M', 'A', 'Z', 'T'};
+    private static final int HEADER = 32;
+    private static final int TYPE_SHIFT = 4;
+    private static final int MASK_BITS = 0x0F;
+    private static final long WINDOW_BYTES = 1L << 30; // Largest part of the file mapped at once
+
+    /**
+     * Gives the type of each cell of a maze being written, so a maze can be written without first being held in memory.
+     */
+    public interface CellSource {
+        /**
+         * Returns the type (WALL, OPEN, START or GOAL) of the cell at a row and column inside the maze.
+         */
+        int getType(int row, int col);
+    }
+
+    private final FileChannel channel;
+    private final int rows;
+    private final int columns;
+    private final int tileSize;
+    private final int tilesAcross;   // Number of tiles in a row of tiles
+    private final long tileBytes;
+    private final long startCell;    // Cell index of the start position, or -1
+    private final long goalCell;     // Cell index of the goal position, or -1
+    private final int tilesPerWindow;
+    private final MappedByteBuffer[] windows; // Mapped parts of the file, or null until first needed
+    private final LinkedHashMap<Integer, byte[]> tiles; // Cached tiles, least recently used first
+    private byte[] spareTile;        // Array of the last evicted tile, reused for the next one
+    private int lastTile = -1;       // The tile read last, looked up without going through the cache
+    private byte[] lastCells;
+    private long tileLoads;
+    private long tileEvictions;
+
+    private TiledMazeStore(FileChannel channel, int maxTiles) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+        channel.read(header, 0);
+        for (int i = 0; i < TILED_MAGIC.length; i++) {
+            if (header.get(i) != TILED_MAGIC[i]) {
+                throw new IOException("not a tiled maze file");
+            }
+        }
+        rows = header.getInt(4);
+        columns = header.getInt(8);
+        tileSize = header.getInt(12);
+        startCell = header.getLong(16);
+        goalCell = header.getLong(24);
+        if (rows <= 0 || columns <= 0 || tileSize <= 0 || tileSize > 1 << 15) {
+            throw new IOException("invalid tiled maze size " + rows + "x" + columns + " in tiles of " + tileSize);
+        }
+        tilesAcross = (columns + tileSize - 1) / tileSize;
+        long tileCount = (long) tilesAcross * ((rows + tileSize - 1) / tileSize);
+        tileBytes = (long) tileSize * tileSize;
+        if (tileCount > Integer.MAX_VALUE || channel.size() < HEADER + tileCount * tileBytes) {
+            throw new IOException("tiled maze file is truncated");
+        }
+        tilesPerWindow = (int) Math.max(1, WINDOW_BYTES / tileBytes);
+        windows = new MappedByteBuffer[(int) ((tileCount + tilesPerWindow - 1) / tilesPerWindow)];
+        tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                if (size() > maxTiles) {
+                    tileEvictions++;
+                    spareTile = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Opens a tiled maze file for reading.
+     *
+     * @param file     A file written by one of the write methods.
+     * @param maxTiles Largest number of tiles kept on the heap at once.
+     * @return The store. Close it to release the file.
+     */
+    public static TiledMazeStore open(Path file, int maxTiles) throws IOException {
+        if (maxTiles < 1) {
+            throw new IllegalArgumentException("cache must hold at least one tile");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new TiledMazeStore(channel, maxTiles);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a maze held in memory as a tiled maze file.
+     *
+     * @param grid     The maze.
+     * @param file     The file to write.
+     * @param tileSize Number of rows and columns in a tile.
+     */
+    public static void write(MazeGrid grid, Path file, int tileSize) throws IOException {
+        write(file, grid.getRows(), grid.getColumns(), tileSize, (row, col) -> grid.getType(grid.index(row, col)));
+    }
+
+    /**
+     * Writes a tiled maze file one tile at a time, asking the source for the type of each cell, so the maze
+     * never has to fit in memory.
+     *
+     * @param file     The file to write.
+     * @param rows     Number of rows in the maze.
+     * @param columns  Number of columns in the maze.
+     * @param tileSize Number of rows and columns in a tile.
+     * @param source   Type of each cell. The first START and GOAL cells found become the start and goal.
+     */
+    public static void write(Path file, int rows, int columns, int tileSize, CellSource source) throws IOException {
+        if (rows <= 0 || columns <= 0 || tileSize <= 0 || tileSize > 1 << 15) {
+            throw new IllegalArgumentException("invalid tiled maze size " + rows + "x" + columns + " in tiles of " + tileSize);
+        }
+        long startCell = -1;
+        long goalCell = -1;
+        byte[] tile = new byte[tileSize * tileSize];
+        // Types of the tile's cells with a border of one cell all round, walls outside the maze
+        int haloSize = tileSize + 2;
+        byte[] types = new byte[haloSize * haloSize];
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = HEADER;
+            for (int tileRow = 0; tileRow < rows; tileRow += tileSize) {
+                for (int tileCol = 0; tileCol < columns; tileCol += tileSize) {
+                    for (int i = 0; i < haloSize; i++) {
+                        int row = tileRow + i - 1;
+                        for (int j = 0; j < haloSize; j++) {
+                            int col = tileCol + j - 1;
+                            boolean inside = row >= 0 && row < rows && col >= 0 && col < columns;
+                            types[i * haloSize + j] = (byte) (inside ? source.getType(row, col) : MazeGrid.WALL);
+                        }
+                    }
+                    int index = 0;
+                    for (int i = 1; i <= tileSize; i++) {
+                        for (int j = 1; j <= tileSize; j++) {
+                            int at = i * haloSize + j;
+                            int type = types[at];
+                            int mask = 0;
+                            if (type != MazeGrid.WALL) {
+                                mask = (types[at - haloSize] != MazeGrid.WALL ? 1 << MazeGrid.UP : 0)
+                                        | (types[at + haloSize] != MazeGrid.WALL ? 1 << MazeGrid.DOWN : 0)
+                                        | (types[at - 1] != MazeGrid.WALL ? 1 << MazeGrid.LEFT : 0)
+                                        | (types[at + 1] != MazeGrid.WALL ? 1 << MazeGrid.RIGHT : 0);
+                            }
+                            long cell = (long) (tileRow + i - 1) * columns + tileCol + j - 1;
+                            if (type == MazeGrid.START && startCell < 0) {
+                                startCell = cell;
+                            } else if (type == MazeGrid.GOAL && goalCell < 0) {
+                                goalCell = cell;
+                            }
+                            tile[index++] = (byte) (type << TYPE_SHIFT | mask);
+                        }
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(tile);
+                    while (buffer.hasRemaining()) {
+                        position += out.write(buffer, position);
+                    }
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+            header.put(TILED_MAGIC).putInt(rows).putInt(columns).putInt(tileSize).putLong(startCell).putLong(goalCell);
+            header.flip();
+            out.write(header, 0);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public long getCellCount() {
+        return (long) rows * columns;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public long getStartCell() {
+        return startCell;
+    }
+
+    public long getGoalCell() {
+        return goalCell;
+    }
+
+    /**
+     * Returns the number of times a tile was read from the file, counting tiles read again after being evicted.
+     */
+    public long getTileLoads() {
+        return tileLoads;
+    }
+
+    public long getTileEvictions() {
+        return tileEvictions;
+    }
+
+    /**
+     * Returns the type of a cell (WALL, OPEN, START or GOAL).
+     */
+    public int getType(long cell) {
+        return (cellByte(cell) >> TYPE_SHIFT) & 0x03;
+    }
+
+    public boolean isWall(long cell) {
+        return getType(cell) == MazeGrid.WALL;
+    }
+
+    /**
+     * Returns a mask with bit d set when the neighbour in direction d is inside the maze and not a wall.
+     * Walls have an empty mask.
+     */
+    public int getNeighborMask(long cell) {
+        return cellByte(cell) & MASK_BITS;
+    }
+
+    /**
+     * Returns the index of the neighbour of a cell in the given direction. The caller checks the neighbour mask first.
+     */
+    public long neighbor(long cell, int direction) {
+        switch (direction) {
+            case MazeGrid.UP:
+                return cell - columns;
+            case MazeGrid.DOWN:
+                return cell + columns;
+            case MazeGrid.LEFT:
+                return cell - 1;
+            default:
+                return cell + 1;
+        }
+    }
+
+    public int row(long cell) {
+        return (int) (cell / columns);
+    }
+
+    public int col(long cell) {
+        return (int) (cell % columns);
+    }
+
+    public long index(int row, int col) {
+        return (long) row * columns + col;
+    }
+
+    /**
+     * Returns the Manhattan distance between two cells.
+     */
+    public int manhattan(long cell, long otherCell) {
+        return Math.abs(row(cell) - row(otherCell)) + Math.abs(col(cell) - col(otherCell));
+    }
+
+    /**
+     * Closes the file. The mapped windows are released by the garbage collector once nothing refers to them.
+     */
+    @Override
+    public void close() throws IOException {
+        tiles.clear();
+        Arrays.fill(windows, null);
+        lastTile = -1;
+        lastCells = null;
+        channel.close();
+    }
+
+    private int cellByte(long cell) {
+        int row = (int) (cell / columns);
+        int col = (int) (cell - (long) row * columns);
+        int tile = (row / tileSize) * tilesAcross + col / tileSize;
+        byte[] cells = tile == lastTile ? lastCells : tile(tile);
+        return cells[(row % tileSize) * tileSize + col % tileSize];
+    }
+
+    private byte[] tile(int tile) {
+        byte[] cells = tiles.get(tile);
+        if (cells == null) {
+            int window = tile / tilesPerWindow;
+            if (windows[window] == null) {
+                long first = HEADER + (long) window * tilesPerWindow * tileBytes;
+                try {
+                    windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, first,
+                            Math.min((long) tilesPerWindow * tileBytes, channel.size() - first));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("cannot map tile " + tile, e);
+                }
+            }
+            cells = spareTile != null ? spareTile : new byte[(int) tileBytes];
+            spareTile = null;
+            windows[window].get((int) ((tile % tilesPerWindow) * tileBytes), cells);
+            tileLoads++;
+            tiles.put(tile, cells);
+        }
+        lastTile = tile;
+        lastCells = cells;
+        return cells;
+    }
+}